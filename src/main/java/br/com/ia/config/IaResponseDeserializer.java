@@ -0,0 +1,45 @@
+package br.com.ia.config;
+
+import java.io.IOException;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.messaging.MessageHeaders;
+
+import br.com.ia.model.IaResponse;
+import br.com.ia.sdk.transport.IaWireCodec;
+import br.com.ia.sdk.transport.WireFormat;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Lê {@link IaResponse} de ia.responses no formato indicado pelo header {@code contentType}
+ * (JSON quando ausente).
+ */
+@RequiredArgsConstructor
+public class IaResponseDeserializer implements Deserializer<IaResponse> {
+
+	private final IaWireCodec codec;
+
+	@Override
+	public IaResponse deserialize(String topic, byte[] data) {
+		return read(data, WireFormat.JSON);
+	}
+
+	@Override
+	public IaResponse deserialize(String topic, Headers headers, byte[] data) {
+		Header ct = headers == null ? null : headers.lastHeader(MessageHeaders.CONTENT_TYPE);
+		return read(data, WireFormat.fromContentType(ct == null ? null : ct.value()));
+	}
+
+	private IaResponse read(byte[] data, WireFormat format) {
+		if (data == null)
+			return null;
+		try {
+			return codec.decode(data, format, IaResponse.class);
+		} catch (IOException e) {
+			throw new SerializationException("Falha ao ler IaResponse (" + format + "): " + e.getMessage(), e);
+		}
+	}
+}
@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -11,7 +12,10 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
-import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.listener.ContainerProperties.AckMode;
+
+import br.com.ia.model.IaResponse;
+import br.com.ia.sdk.transport.IaWireCodec;
 
 /**
  * Configuracao minima do Kafka apenas para @KafkaListener O resto
@@ -24,23 +28,54 @@ public class KafkaListenerConfig {
 	private String bootstrapServers;
 
 	@Bean
-	public ConsumerFactory<String, Object> kafkaConsumerFactory() {
+	public ConsumerFactory<String, IaResponse> kafkaConsumerFactory(IaWireCodec codec) {
 		Map<String, Object> props = new HashMap<>();
 		props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-		props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-		props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
 
-		// Configuracoes do JsonDeserializer
-		props.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
-		props.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
+		// Unico listener: ia.responses. O formato (JSON/Smile) vem do header contentType
+		return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new IaResponseDeserializer(codec));
+	}
+
+	@Bean
+	public ConcurrentKafkaListenerContainerFactory<String, IaResponse> kafkaListenerContainerFactory(
+			ConsumerFactory<String, IaResponse> kafkaConsumerFactory) {
+		ConcurrentKafkaListenerContainerFactory<String, IaResponse> factory = new ConcurrentKafkaListenerContainerFactory<>();
+		factory.setConsumerFactory(kafkaConsumerFactory);
+		return factory;
+	}
+
+	/**
+	 * Listeners dos tiers de retry (ia.requests.retry-N): bytes crus, uma mensagem por poll e ack
+	 * manual. Mensagem ainda não vencida é devolvida com {@code nack(sleep)}: a partição fica
+	 * pausada sem bloquear a thread do consumer nem confirmar o offset.
+	 */
+	@Bean
+	public ConcurrentKafkaListenerContainerFactory<String, byte[]> retryListenerContainerFactory() {
+		Map<String, Object> props = new HashMap<>();
+		props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+		props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1);
+		props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
 
-		return new DefaultKafkaConsumerFactory<>(props);
+		ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = new ConcurrentKafkaListenerContainerFactory<>();
+		factory.setConsumerFactory(
+				new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new ByteArrayDeserializer()));
+		factory.getContainerProperties().setAckMode(AckMode.MANUAL_IMMEDIATE);
+		return factory;
 	}
 
+	/**
+	 * Listener de ia.control (cancelamentos): group por instância e leitura só do que chegar
+	 * depois de subir; cancelamentos antigos não interessam.
+	 */
 	@Bean
-	public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory() {
-		ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
-		factory.setConsumerFactory(kafkaConsumerFactory());
+	public ConcurrentKafkaListenerContainerFactory<String, byte[]> controlListenerContainerFactory() {
+		Map<String, Object> props = new HashMap<>();
+		props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+		props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+
+		ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = new ConcurrentKafkaListenerContainerFactory<>();
+		factory.setConsumerFactory(
+				new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new ByteArrayDeserializer()));
 		return factory;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package br.com.ia.config;
+
+import java.io.IOException;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.converter.MessageConverter;
+
+import br.com.ia.sdk.transport.IaWireCodec;
+import br.com.ia.sdk.transport.WireFormat;
+
+/**
+ * Registra no Spring Cloud Stream o conversor de {@code application/x-jackson-smile}. O
+ * binder escolhe o conversor pelo header {@code contentType} de cada mensagem; sem header
+ * vale o content-type da binding (JSON).
+ */
+@Configuration
+public class WireFormatConfig {
+
+	@Bean
+	public MessageConverter smileMessageConverter(IaWireCodec codec) {
+		return new SmileMessageConverter(codec);
+	}
+
+	static final class SmileMessageConverter extends AbstractMessageConverter {
+
+		private final IaWireCodec codec;
+
+		SmileMessageConverter(IaWireCodec codec) {
+			super(WireFormat.SMILE.toMimeType());
+			this.codec = codec;
+		}
+
+		@Override
+		protected boolean supports(Class<?> clazz) {
+			return true;
+		}
+
+		@Override
+		protected Object convertFromInternal(Message<?> message, Class<?> targetClass,
+				@Nullable Object conversionHint) {
+			if (!(message.getPayload() instanceof byte[] data))
+				return null;
+			try {
+				return codec.decode(data, WireFormat.SMILE, targetClass);
+			} catch (IOException e) {
+				throw new MessageConversionException(message, "Falha ao ler Smile: " + e.getMessage(), e);
+			}
+		}
+
+		@Override
+		protected Object convertToInternal(Object payload, @Nullable MessageHeaders headers,
+				@Nullable Object conversionHint) {
+			if (payload instanceof byte[])
+				return payload;
+			try {
+				return codec.encode(payload, WireFormat.SMILE);
+			} catch (IOException e) {
+				throw new MessageConversionException("Falha ao escrever Smile: " + e.getMessage(), e);
+			}
+		}
+	}
+}
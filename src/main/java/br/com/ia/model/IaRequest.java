@@ -38,4 +38,10 @@ public class IaRequest {
      * - text.response_format / tools / tool_choice (quando aplicável)
      */
     private Map<String, Object> options;
+
+    /**
+     * Referência do corpo completo no ClaimCheckStore (envelope de claim-check). Quando
+     * presente, os demais campos, exceto chatId, vêm vazios.
+     */
+    private String claimCheck;
 }
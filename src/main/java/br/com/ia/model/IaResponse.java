@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import br.com.ia.model.responses.Usage;
 import br.com.shared.annotations.Comment;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -31,11 +32,20 @@ public class IaResponse {
 	private int tokensPrompt;
 	private int tokensResposta;
 
+	// usage.input_tokens_details.cached_tokens e usage.output_tokens_details.reasoning_tokens
+	@Comment("Parte de tokensPrompt servida pelo prompt cache (cobrada com desconto).")
+	private int tokensPromptCache;
+	@Comment("Parte de tokensResposta gasta em raciocínio.")
+	private int tokensRaciocinio;
+
 	// Campos para controle de sucesso/erro
 	private boolean success = true;
 	private String errorMessage;
 	private String errorCode;
 
+	@Comment("Referência do corpo completo no ClaimCheckStore quando a resposta excede o limite do Kafka.")
+	private String claimCheck;
+
 	/**
 	 * Verifica se a resposta foi bem-sucedida
 	 * 
@@ -91,6 +101,16 @@ public class IaResponse {
 		return response;
 	}
 
+	/**
+	 * Cria uma resposta de sucesso a partir do usage tipado (inclui cache e raciocínio)
+	 */
+	public static IaResponse success(String chatId, String resposta, BigDecimal custo, String modelo, Usage usage) {
+		IaResponse response = success(chatId, resposta, custo, modelo, usage.inputTokens(), usage.outputTokens());
+		response.setTokensPromptCache(usage.cachedTokens());
+		response.setTokensRaciocinio(usage.reasoningTokens());
+		return response;
+	}
+
 	/**
 	 * Cria uma resposta de erro
 	 */
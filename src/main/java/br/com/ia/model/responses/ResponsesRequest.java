@@ -1,5 +1,6 @@
 package br.com.ia.model.responses;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.*;
@@ -7,7 +8,7 @@ import lombok.*;
 import java.util.List;
 import java.util.Map;
 
-@Data @Builder @NoArgsConstructor @AllArgsConstructor
+@Data @Builder(toBuilder = true) @NoArgsConstructor @AllArgsConstructor
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class ResponsesRequest {
 
@@ -55,12 +56,25 @@ public class ResponsesRequest {
   // Saídas estruturadas (JSON garantido)
   private TextOptions text;
 
+  // Prazo absoluto (epoch ms) do request Kafka; só limita a chamada, não vai no corpo
+  @JsonIgnore private Long deadlineEpochMs;
+
   /* ===== Tipos auxiliares ===== */
 
   @Data @Builder @NoArgsConstructor @AllArgsConstructor
+  @JsonInclude(JsonInclude.Include.NON_NULL)
   public static class InputItem {
     private String role; // "user" | "assistant" | "system"
     private List<ContentBlock> content;
+
+    // resultado de function call: type="function_call_output", call_id + output
+    private String type;
+    @JsonProperty("call_id") private String callId;
+    private String output;
+
+    public static InputItem functionCallOutput(String callId, String output) {
+      return InputItem.builder().type("function_call_output").callId(callId).output(output).build();
+    }
   }
 
   @Data @Builder @NoArgsConstructor @AllArgsConstructor
@@ -69,6 +83,13 @@ public class ResponsesRequest {
     private String text;                        // quando input_text
     @JsonProperty("image_url") private String imageUrl; // quando input_image
     @JsonProperty("file_id") private String fileId;     // quando input_file
+
+    /** Texto de shard escrito em streaming pelo ResponsesRequestWriter (substitui {@code text}). */
+    @JsonIgnore private ShardText shard;
+
+    public String getText() {
+      return text == null && shard != null ? shard.render() : text;
+    }
   }
 
   @Data @Builder @NoArgsConstructor @AllArgsConstructor
@@ -11,15 +11,33 @@ public class ResponsesResponse {
   private String id;
   private String model;
   @JsonProperty("service_tier") private String serviceTier;
+  private String status;               // completed | incomplete | failed ...
   private List<OutputItem> output;     // texto, tool calls, etc.
-  private Map<String,Object> usage;    // tokens, etc.
+  private Usage usage;                 // tokens (com cache e raciocínio)
+
+  /**
+   * Concatenação dos {@code output_text} dos itens {@code message}, na ordem (itens de
+   * raciocínio não entram). Preenchido pelo ResponsesResponseParser.
+   */
+  @JsonProperty("output_text") private String outputText;
+
+  public Usage getUsage() {
+    return usage != null ? usage : Usage.EMPTY;
+  }
 
   @Data @NoArgsConstructor @AllArgsConstructor
   public static class OutputItem {
-    private String type;               // "message", "tool_call", etc.
+    private String type;               // "message", "function_call", "reasoning", etc.
+    private String id;
     private String role;               // se for message
     private List<OutputContent> content;
     @JsonProperty("tool") private ToolCall tool; // quando type=tool_call
+
+    // quando type=function_call
+    @JsonProperty("call_id") private String callId;
+    private String name;
+    private String arguments;          // JSON (string) com os argumentos
+    private String status;
   }
 
   @Data @NoArgsConstructor @AllArgsConstructor
@@ -0,0 +1,49 @@
+package br.com.ia.model.responses;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Texto de um bloco de context shard ainda não materializado:
+ * {@code ### CTX:<type> v<version>[ (stable)]\n<json do payload>}.
+ * <p>
+ * O {@code ResponsesRequestWriter} escreve o payload direto no corpo HTTP (sem montar a
+ * {@code String}) com o {@code ObjectMapper} da aplicação; {@link #render(ObjectMapper)} é o
+ * caminho lento com o mesmo mapper. {@link #render()} usa um mapper padrão e serve só para quem
+ * serializa o request fora do envio (logs, {@code ObjectMapper} comum): não é o texto enviado.
+ * </p>
+ *
+ * @param type    tipo do shard
+ * @param version versão do shard
+ * @param stable  shard estável (elegível ao cache de fragmentos pré-renderizados)
+ * @param payload payload do shard (mapa vindo do ERP)
+ */
+public record ShardText(String type, int version, boolean stable, Object payload) {
+
+	private static final ObjectMapper FALLBACK = new ObjectMapper();
+
+	public String header() {
+		return "### CTX:%s v%d%s".formatted(type, version, stable ? " (stable)" : "");
+	}
+
+	/** JSON usado quando o payload não serializa. */
+	public String errorPayload() {
+		return "{\"erro\":\"falha ao serializar shard %s\"}".formatted(type);
+	}
+
+	/** Materializa o texto completo com o mapper informado (caminho lento). */
+	public String render(ObjectMapper mapper) {
+		String json;
+		try {
+			json = mapper.writeValueAsString(payload);
+		} catch (JsonProcessingException e) {
+			json = errorPayload();
+		}
+		return header() + "\n" + json;
+	}
+
+	/** Texto completo com o mapper padrão, para logs/depuração. */
+	public String render() {
+		return render(FALLBACK);
+	}
+}
@@ -0,0 +1,65 @@
+package br.com.ia.model.responses;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/**
+ * Uso de tokens da Responses API, já com os detalhes que afetam custo:
+ * {@code input_tokens_details.cached_tokens} (cobrados com desconto de prompt cache) e
+ * {@code output_tokens_details.reasoning_tokens} (incluídos em {@code output_tokens}).
+ *
+ * @param inputTokens     total de tokens de entrada (inclui os em cache)
+ * @param cachedTokens    parte da entrada servida pelo prompt cache
+ * @param outputTokens    total de tokens de saída (inclui raciocínio)
+ * @param reasoningTokens parte da saída gasta em raciocínio
+ * @param totalTokens     total informado pela API
+ */
+public record Usage(int inputTokens, int cachedTokens, int outputTokens, int reasoningTokens, int totalTokens) {
+
+	public static final Usage EMPTY = new Usage(0, 0, 0, 0, 0);
+
+	/** Lê o mapa {@code usage} do corpo da resposta (campos ausentes viram 0). */
+	@JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+	public static Usage from(Map<String, Object> usage) {
+		if (usage == null || usage.isEmpty())
+			return EMPTY;
+		int input = intOf(usage.get("input_tokens"));
+		int output = intOf(usage.get("output_tokens"));
+		int total = usage.containsKey("total_tokens") ? intOf(usage.get("total_tokens")) : input + output;
+		return new Usage(input, intOf(detail(usage, "input_tokens_details", "cached_tokens")), output,
+				intOf(detail(usage, "output_tokens_details", "reasoning_tokens")), total);
+	}
+
+	/** Soma de duas chamadas (ex.: rodadas de tool call). */
+	public Usage plus(Usage o) {
+		return new Usage(inputTokens + o.inputTokens, cachedTokens + o.cachedTokens, outputTokens + o.outputTokens,
+				reasoningTokens + o.reasoningTokens, totalTokens + o.totalTokens);
+	}
+
+	/** Entrada cobrada pelo preço cheio. */
+	public int uncachedInputTokens() {
+		return Math.max(0, inputTokens - cachedTokens);
+	}
+
+	/** Fração da entrada servida pelo cache (0..1). */
+	public double cacheHitRatio() {
+		return inputTokens <= 0 ? 0.0 : (double) Math.min(cachedTokens, inputTokens) / inputTokens;
+	}
+
+	private static Object detail(Map<String, Object> usage, String details, String key) {
+		return usage.get(details) instanceof Map<?, ?> m ? m.get(key) : null;
+	}
+
+	private static int intOf(Object v) {
+		if (v instanceof Number n)
+			return n.intValue();
+		if (v == null)
+			return 0;
+		try {
+			return Integer.parseInt(String.valueOf(v).trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
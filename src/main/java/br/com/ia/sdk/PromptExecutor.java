@@ -1,8 +1,26 @@
 package br.com.ia.sdk;
 
+import java.util.Optional;
+
 import br.com.ia.model.IaResponse;
 import br.com.shared.exception.IAException;
 
 public interface PromptExecutor {
 	IaResponse executaPrompt(PromptRequest request) throws IAException;
+
+	/**
+	 * Cancela o prompt em andamento do chatId: publica o cancelamento em {@code ia.control}
+	 * (o processor descarta o request se ainda estiver na fila ou interrompe a chamada à API)
+	 * e completa na hora a espera local com {@code errorCode=CANCELLED}.
+	 *
+	 * @param correlationId chatId usado no {@link PromptRequest}
+	 * @return true se havia um prompt aguardando resposta nesta instância
+	 */
+	boolean cancel(String correlationId);
+
+	/**
+	 * Último resultado concluído do chatId guardado no result store (inclusive respostas que
+	 * chegaram depois do timeout de {@link #executaPrompt}).
+	 */
+	Optional<IaResponse> fetchResult(String correlationId);
 }
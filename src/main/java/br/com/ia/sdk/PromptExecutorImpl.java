@@ -1,22 +1,28 @@
 package br.com.ia.sdk;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import br.com.ia.model.IaRequest;
@@ -25,7 +31,13 @@ import br.com.ia.model.RequestProvider;
 import br.com.ia.sdk.context.ContextShard;
 import br.com.ia.sdk.context.ContextShardDTOs;
 import br.com.ia.sdk.context.ContextShards;
+import br.com.ia.sdk.context.ShardSelector;
+import br.com.ia.sdk.transport.IaHeaders;
+import br.com.ia.sdk.transport.IaWireCodec;
 import br.com.ia.sdk.transport.PromptRequestPayload;
+import br.com.ia.sdk.transport.WireFormat;
+import br.com.ia.sdk.transport.claimcheck.ClaimCheckService;
+import br.com.ia.sdk.transport.result.IaResultStore;
 import br.com.ia.services.PendingIaRequestStore;
 import br.com.ia.utils.CacheKeys;
 import br.com.ia.utils.IAUtils;
@@ -38,14 +50,29 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public class PromptExecutorImpl implements PromptExecutor {
 
+	/** errorCode da resposta de um prompt cancelado por {@link #cancel(String)}. */
+	public static final String CANCELLED = "CANCELLED";
+
 	private final StreamBridge bridge;
 	private final RequestProvider provider;
 	private final PendingIaRequestStore pending;
 	private final ObjectMapper objectMapper;
+	private final IaWireCodec wireCodec;
+	private final ClaimCheckService claimChecks;
+	private final IaResultStore resultStore;
+	private final ShardSelector shardSelector;
 
 	@Value("${ia.responses.topic:processIa-out-0}")
 	private String topic;
 
+	/** Tópico de controle (cancelamentos) consumido por todas as instâncias do processor. */
+	@Value("${erp.ia.control.topic:ia.control}")
+	private String controlTopic;
+
+	/** Formato de envio em ia.requests: json (padrão, compatível) ou smile. */
+	@Value("${erp.ia.wire-format:json}")
+	private String wireFormat;
+
 	@Value("${erp.ia.reply-timeout-ms:30000}")
 	private long timeoutMs;
 
@@ -73,26 +100,77 @@ public class PromptExecutorImpl implements PromptExecutor {
 	public IaResponse executaPrompt(PromptRequest r) throws IAException {
 		preValidacoes(r);
 
-		// 1) Otimiza e valida o payload (via wrapper serializável)
-		r = otimizarEValidar(r);
+		// 0) Seleção por relevância: estáveis + voláteis mais relevantes ao prompt no orçamento de tokens
+		if (shardSelector.appliesTo(r.getContextShards())) {
+			PromptRequest x = criarCopiaRequest(r);
+			x.setContextShards(shardSelector.select(r.getChatId(), r.getPrompt(), r.getContextShards()));
+			r = x;
+		}
+
+		// 1) Otimiza e valida o payload (via wrapper serializável). Com claim-check não há
+		// limite de mensagem: o corpo grande vai para o store sem truncar contexto.
+		if (!claimChecks.isEnabled())
+			r = otimizarEValidar(r);
 
 		// 2) Monta opções para o provider
 		Map<String, Object> opts = criarOpcoesRequest(r);
 		IaRequest iaReq = provider.getRequest(r.getPrompt(), r.getChatId(), r.getApiKey(), opts);
 
-		// 3) Validação final do IaRequest serializado (tamanho/JSON)
-		validarIaRequestFinal(iaReq);
+		// 3) Serializa uma única vez: os mesmos bytes são validados (tamanho) e enviados
+		WireFormat format = WireFormat.of(wireFormat);
+		ByteArrayBuilder buf = serializar(iaReq, format);
+
+		// hash do corpo completo: identifica o mesmo request num reenvio (result store)
+		byte[] full = null;
+		String requestHash = null;
+		if (resultStore.isEnabled()) {
+			full = buf.toByteArray();
+			requestHash = sha256(full);
+			if (resultStore.isReattach()) {
+				var stored = resultStore.find(r.getChatId(), requestHash);
+				if (stored.isPresent()) {
+					log.info("Reenvio de chatId {} atendido pelo result store (sem nova chamada ao modelo)", r.getChatId());
+					return stored.get();
+				}
+			}
+		}
+		byte[] body = validar(iaReq, format, buf, full);
 
 		// 4) Envia e aguarda resposta
 		var future = pending.create(r.getChatId());
-		Message<IaRequest> msg = MessageBuilder.withPayload(iaReq).setHeader("chatId", r.getChatId())
-				.setHeader(KafkaHeaders.KEY, r.getChatId()).build();
+		MessageBuilder<byte[]> mb = MessageBuilder.withPayload(body).setHeader("chatId", r.getChatId())
+				.setHeader(KafkaHeaders.KEY, r.getChatId())
+				.setHeader(MessageHeaders.CONTENT_TYPE, format.mimeType())
+				// prazo absoluto: passado dele o processor descarta em vez de pagar por resposta ignorada
+				.setHeader(IaHeaders.DEADLINE, System.currentTimeMillis() + timeoutMs)
+				.setHeader(IaHeaders.SENT_AT, System.currentTimeMillis())
+				.setHeader(IaHeaders.REQUEST_ID, UUID.randomUUID().toString());
+		if (requestHash != null)
+			mb.setHeader(IaHeaders.REQUEST_HASH, requestHash);
+		Message<byte[]> msg = mb.build();
 
 		bridge.send(topic, msg);
 
 		return IAUtils.aguardarRespostaIA(r.getChatId(), future, pending, Duration.ofMillis(timeoutMs), true);
 	}
 
+	@Override
+	public boolean cancel(String correlationId) {
+		if (isBlank(correlationId))
+			return false;
+
+		Message<byte[]> msg = MessageBuilder.withPayload(correlationId.getBytes(StandardCharsets.UTF_8))
+				.setHeader(KafkaHeaders.KEY, correlationId)
+				.setHeader(IaHeaders.CONTROL, IaHeaders.CANCEL)
+				.setHeader(IaHeaders.CANCEL_AT, System.currentTimeMillis()).build();
+		bridge.send(controlTopic, msg);
+
+		boolean pendente = pending.complete(correlationId,
+				IaResponse.error(correlationId, "Prompt cancelado pelo usuário", CANCELLED));
+		log.info("Cancelamento publicado para chatId {} (aguardando localmente: {})", correlationId, pendente);
+		return pendente;
+	}
+
 	/** Cria o mapa de opções para o request */
 	private Map<String, Object> criarOpcoesRequest(PromptRequest r) {
 		Map<String, Object> opts = new HashMap<>();
@@ -122,7 +200,9 @@ public class PromptExecutorImpl implements PromptExecutor {
 		adicionarCacheKey(r, opts);
 
 		// Metadata
-		opts.put("metadata", Map.of("chatId", r.getChatId(), "moduleKey", obterModuleKey(r)));
+		opts.put("metadata", Map.of("chatId", r.getChatId(), "moduleKey", obterModuleKey(r),
+				"schemaVersion", r.getVersaoSchema() == null ? 1 : r.getVersaoSchema(),
+				"rulesVersion", r.getVersaoRegrasModulo() == null ? 1 : r.getVersaoRegrasModulo()));
 
 		return opts;
 	}
@@ -261,19 +341,50 @@ public class PromptExecutorImpl implements PromptExecutor {
 		return r;
 	}
 
-	/** Validação final do IaRequest serializado */
-	private void validarIaRequestFinal(IaRequest iaReq) throws IAException {
+	@Override
+	public Optional<IaResponse> fetchResult(String correlationId) {
+		return resultStore.find(correlationId);
+	}
+
+	/** Serializa o IaRequest no buffer da thread. */
+	private ByteArrayBuilder serializar(IaRequest iaReq, WireFormat format) throws IAException {
 		try {
-			String json = objectMapper.writeValueAsString(iaReq);
-			int tamanho = json.getBytes(StandardCharsets.UTF_8).length;
+			return wireCodec.write(iaReq, format);
+		} catch (IOException e) {
+			throw new IAException("Erro ao serializar IaRequest final: " + e.getMessage(), e);
+		}
+	}
 
-			if (tamanho > maxPayloadSize) {
-				throw new IAException(
-						String.format("IaRequest final muito grande: %d bytes > %d bytes", tamanho, maxPayloadSize));
+	/**
+	 * Valida o tamanho do corpo serializado e devolve os bytes que vão para o Kafka (a única
+	 * cópia é a do array final, só quando cabe no limite; {@code full} é reaproveitado se já
+	 * copiado). Acima do limite de claim-check, grava o corpo no store e devolve o envelope.
+	 */
+	private byte[] validar(IaRequest iaReq, WireFormat format, ByteArrayBuilder buf, byte[] full)
+			throws IAException {
+		int tamanho = buf.size();
+		if (claimChecks.exceeds(tamanho)) {
+			try {
+				String ref = claimChecks.checkIn(buf);
+				log.debug("IaRequest de {} bytes enviado por claim-check {}", tamanho, ref);
+				return wireCodec.encode(claimChecks.requestEnvelope(iaReq.getChatId(), ref), format);
+			} catch (IOException e) {
+				throw new IAException("Erro ao gravar claim-check do IaRequest: " + e.getMessage(), e);
 			}
-			log.debug("IaRequest final validado: {} bytes", tamanho);
-		} catch (JsonProcessingException e) {
-			throw new IAException("Erro ao serializar IaRequest final: " + e.getMessage(), e);
+		}
+		if (tamanho > maxPayloadSize) {
+			throw new IAException(
+					String.format("IaRequest final muito grande: %d bytes > %d bytes", tamanho, maxPayloadSize));
+		}
+		log.debug("IaRequest final validado: {} bytes ({})", tamanho, format);
+		return full != null ? full : buf.toByteArray();
+	}
+
+	private static String sha256(byte[] data) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
 		}
 	}
 
@@ -0,0 +1,168 @@
+package br.com.ia.sdk.context;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Retenção de {@code ia_context_shard}: apaga versões antigas em segundo plano.
+ * <p>
+ * Uma versão fica enquanto estiver entre as {@code erp.ia.shard-retention.keep-versions} mais
+ * recentes do (chat, type) <b>ou</b> for mais nova que {@code max-age-minutes} ({@code <= 0}
+ * desliga o critério de idade); a mais recente nunca sai. Os grupos (chat, type) são percorridos
+ * por keyset no índice {@code (chat_id, shard_type)}, sem contagem correlacionada nem varredura
+ * da tabela inteira: em cada grupo a {@code keep-versions}-ésima versão mais nova é o limite e as
+ * mais antigas saem em lotes de {@code batch-size} ids, cada um na sua transação curta, com
+ * {@code batch-pause-ms} entre lotes e no máximo {@code max-batches} por execução, para não
+ * segurar locks da tabela nem competir com o {@code upsert}. A execução seguinte continua do
+ * grupo onde a anterior parou. Desligado por padrão ({@code erp.ia.shard-retention.enabled}): a remoção
+ * é irreversível e o histórico pode ser necessário para auditoria.
+ * </p>
+ * Métricas: {@code ia.shard.compaction.deleted} (linhas removidas), timer
+ * {@code ia.shard.compaction.batch} (duração de cada delete, o tempo de lock), timer
+ * {@code ia.shard.compaction.run} e gauge {@code ia.shard.compaction.last.deleted}.
+ */
+@Slf4j
+@Component
+public class ContextShardCompactionJob {
+
+	private final ContextShardRepository repo;
+	private final MeterRegistry registry;
+	private final AtomicLong lastDeleted = new AtomicLong();
+
+	@Value("${erp.ia.shard-retention.enabled:false}")
+	private boolean enabled;
+
+	@Value("${erp.ia.shard-retention.keep-versions:5}")
+	private int keepVersions;
+
+	@Value("${erp.ia.shard-retention.max-age-minutes:10080}")
+	private long maxAgeMinutes;
+
+	@Value("${erp.ia.shard-retention.interval-minutes:60}")
+	private long intervalMinutes;
+
+	@Value("${erp.ia.shard-retention.batch-size:500}")
+	private int batchSize;
+
+	@Value("${erp.ia.shard-retention.batch-pause-ms:200}")
+	private long batchPauseMs;
+
+	@Value("${erp.ia.shard-retention.max-batches:200}")
+	private int maxBatches;
+
+	private ScheduledExecutorService compactor;
+
+	/** Cursor (chat, type) entre execuções; volta ao início ao fim da tabela. */
+	private String cursorChat = "";
+	private String cursorType = "";
+
+	public ContextShardCompactionJob(ContextShardRepository repo, ObjectProvider<MeterRegistry> registry) {
+		this.repo = repo;
+		this.registry = registry.getIfAvailable(() -> Metrics.globalRegistry);
+		Gauge.builder("ia.shard.compaction.last.deleted", lastDeleted, AtomicLong::get).register(this.registry);
+	}
+
+	@PostConstruct
+	void start() {
+		if (!enabled)
+			return;
+		compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "ia-shard-compaction");
+			t.setDaemon(true);
+			return t;
+		});
+		long every = Math.max(1, intervalMinutes);
+		compactor.scheduleWithFixedDelay(this::runSafely, every, every, TimeUnit.MINUTES);
+	}
+
+	@PreDestroy
+	void stop() {
+		if (compactor != null)
+			compactor.shutdownNow();
+	}
+
+	/**
+	 * Executa uma rodada de compactação.
+	 *
+	 * @return linhas removidas
+	 */
+	public synchronized long compact() throws InterruptedException {
+		Instant cutoff = maxAgeMinutes > 0 ? Instant.now().minus(Duration.ofMinutes(maxAgeMinutes)) : Instant.now();
+		int keep = Math.max(1, keepVersions);
+		int size = Math.max(1, batchSize);
+		Timer batchTimer = Timer.builder("ia.shard.compaction.batch").register(registry);
+		Counter deleted = Counter.builder("ia.shard.compaction.deleted").register(registry);
+
+		long total = 0;
+		int batches = 0;
+		long t0 = System.nanoTime();
+		scan: while (batches < maxBatches) {
+			List<Object[]> groups = repo.findGroupsAfter(cursorChat, cursorType, PageRequest.of(0, size));
+			for (Object[] g : groups) {
+				String chat = (String) g[0];
+				String type = (String) g[1];
+				// versão mais nova fora das keep mantidas (offset = keep)
+				List<Integer> boundary = repo.findVersions(chat, type, PageRequest.of(keep, 1));
+				while (!boundary.isEmpty()) {
+					if (batches >= maxBatches)
+						break scan; // o grupo atual fica para a próxima execução
+					List<Long> ids = repo.findExpiredIds(chat, type, boundary.get(0), cutoff, PageRequest.of(0, size));
+					if (ids.isEmpty())
+						break;
+
+					long b0 = System.nanoTime();
+					int n = repo.deleteByIds(ids);
+					batchTimer.record(System.nanoTime() - b0, TimeUnit.NANOSECONDS);
+					deleted.increment(n);
+					total += n;
+					batches++;
+
+					if (ids.size() < size)
+						break;
+					Thread.sleep(batchPauseMs);
+				}
+				cursorChat = chat;
+				cursorType = type;
+			}
+			if (groups.size() < size) {
+				cursorChat = "";
+				cursorType = "";
+				break;
+			}
+		}
+		Timer.builder("ia.shard.compaction.run").register(registry).record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+		lastDeleted.set(total);
+		if (total > 0)
+			log.info("Compactação de ia_context_shard: {} versões antigas removidas", total);
+		return total;
+	}
+
+	private void runSafely() {
+		try {
+			compact();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			log.warn("Falha na compactação de ia_context_shard: {}", e.getMessage());
+		}
+	}
+}
@@ -1,6 +1,11 @@
 package br.com.ia.sdk.context;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -10,58 +15,116 @@ import lombok.experimental.UtilityClass;
 @UtilityClass
 public final class ContextShardDTOs {
 
+	/**
+	 * Plano de acesso por classe: resolvido uma única vez (primeiro uso) e reaproveitado em
+	 * todas as conversões seguintes daquela classe.
+	 */
+	private static final ClassValue<AccessorPlan> PLANS = new ClassValue<>() {
+		@Override
+		protected AccessorPlan computeValue(Class<?> type) {
+			return AccessorPlan.resolve(type);
+		}
+	};
+
 	public static List<ContextShardDTO> copyOf(List<?> shards) {
 		return shards == null ? List.of() : shards.stream().map(ContextShardDTOs::of).toList();
 	}
 
 	public static ContextShardDTO of(Object shard) {
-		String type = invokeString(shard, "getType", "type");
-		String id = invokeString(shard, "getId", "id", "getUuid", "uuid");
-		Integer version = invokeInteger(shard, "getVersion", "version", "getVer", "ver");
-		Boolean stable = invokeBoolean(shard, "getStable", "stable", "isStable");
-		@SuppressWarnings("unchecked")
-		Map<String, Object> payload = (Map<String, Object>) invokeFirst(shard, "getPayload", "payload", "getData",
-				"data", "getMap", "map");
-
-		return new ContextShardDTO(type, id, version, stable, payload);
-	}
+		if (shard == null)
+			return null;
 
-	// ---------- helpers ----------
-	private static Object invokeFirst(Object target, String... methods) {
-		for (String m : methods) {
-			Object v = tryInvoke(target, m);
-			if (v != null)
-				return v;
+		// Caminho direto: implementações de ContextShard (record, anônima, ShardImpl...)
+		if (shard instanceof ContextShard cs) {
+			return new ContextShardDTO(cs.type(), null, cs.version(), cs.stable(), cs.payload());
 		}
-		return null;
-	}
 
-	private static String invokeString(Object target, String... methods) {
-		Object v = invokeFirst(target, methods);
-		return (v instanceof String s) ? s : null;
+		return PLANS.get(shard.getClass()).toDto(shard);
 	}
 
-	private static Integer invokeInteger(Object target, String... methods) {
-		Object v = invokeFirst(target, methods);
-		if (v instanceof Integer i)
-			return i;
-		if (v instanceof Number n)
-			return n.intValue();
-		return null;
-	}
+	// ---------- plano de acesso (MethodHandles) ----------
 
-	private static Boolean invokeBoolean(Object target, String... methods) {
-		Object v = invokeFirst(target, methods);
-		return (v instanceof Boolean b) ? b : null;
-	}
+	/**
+	 * Getters candidatos de cada propriedade, na ordem de preferência. Como no antigo
+	 * {@code invokeFirst}, vale o primeiro que devolver valor não nulo (ex.: {@code getPayload()}
+	 * nulo cai para {@code getData()}).
+	 */
+	private record AccessorPlan(MethodHandle[] type, MethodHandle[] id, MethodHandle[] version,
+			MethodHandle[] stable, MethodHandle[] payload) {
 
-	private static Object tryInvoke(Object target, String methodName) {
-		try {
-			Method m = target.getClass().getMethod(methodName);
-			m.setAccessible(true);
-			return m.invoke(target);
-		} catch (ReflectiveOperationException ignore) {
+		private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+		private static final MethodHandle[] NONE = new MethodHandle[0];
+
+		static AccessorPlan resolve(Class<?> c) {
+			return new AccessorPlan(
+					find(c, "getType", "type"),
+					find(c, "getId", "id", "getUuid", "uuid"),
+					find(c, "getVersion", "version", "getVer", "ver"),
+					find(c, "getStable", "stable", "isStable"),
+					find(c, "getPayload", "payload", "getData", "data", "getMap", "map"));
+		}
+
+		ContextShardDTO toDto(Object shard) {
+			Object t = call(type, shard);
+			Object i = call(id, shard);
+			Object v = call(version, shard);
+			Object s = call(stable, shard);
+			Object p = call(payload, shard);
+
+			@SuppressWarnings("unchecked")
+			Map<String, Object> map = (p instanceof Map<?, ?> m) ? (Map<String, Object>) m : null;
+			return new ContextShardDTO(
+					(t instanceof String str) ? str : null,
+					(i instanceof String str) ? str : null,
+					(v instanceof Number n) ? Integer.valueOf(n.intValue()) : null,
+					(s instanceof Boolean b) ? b : null,
+					map);
+		}
+
+		private static Object call(MethodHandle[] candidates, Object target) {
+			for (MethodHandle mh : candidates) {
+				try {
+					Object v = mh.invokeExact(target);
+					if (v != null)
+						return v;
+				} catch (Throwable ignore) { // NOSONAR - getter que falha equivale a "ausente"
+				}
+			}
 			return null;
 		}
+
+		/**
+		 * Getters públicos sem argumentos entre os candidatos, na ordem dos nomes, já adaptados
+		 * para {@code (Object)Object}. Sem exceções no caminho quente: a busca percorre
+		 * {@link Class#getMethods()} uma única vez por classe.
+		 */
+		private static MethodHandle[] find(Class<?> c, String... names) {
+			Method[] methods = c.getMethods();
+			List<MethodHandle> found = new ArrayList<>(names.length);
+			for (String name : names) {
+				for (Method m : methods) {
+					if (m.getParameterCount() == 0 && !Modifier.isStatic(m.getModifiers())
+							&& m.getReturnType() != void.class && m.getName().equals(name)) {
+						MethodHandle mh = unreflect(m);
+						if (mh != null) {
+							found.add(mh);
+							break;
+						}
+					}
+				}
+			}
+			return found.isEmpty() ? NONE : found.toArray(MethodHandle[]::new);
+		}
+
+		private static MethodHandle unreflect(Method m) {
+			try {
+				// classes não públicas (anônimas, records privados) exigem setAccessible
+				if (!m.trySetAccessible())
+					return null;
+				return MethodHandles.lookup().unreflect(m).asType(GETTER);
+			} catch (IllegalAccessException | RuntimeException e) {
+				return null;
+			}
+		}
 	}
 }
@@ -47,11 +47,22 @@ public class ContextShardEntity {
 	@Column(name = "stable", nullable = false)
 	private boolean stable;
 
-	/** JSON leve do payload */
+	/** JSON leve do payload (ou JSON Patch, quando {@link #isDeltaEncoded()}) */
 	@Lob
 	@Column(name = "payload_json", columnDefinition = "TEXT", nullable = false)
 	private String payloadJson;
 
+	/**
+	 * true: {@code payload_json} é um JSON Patch que, aplicado ao payload de
+	 * {@link #baseVersion}, reconstrói esta versão. Nulo/false: payload completo.
+	 */
+	@Column(name = "delta")
+	private Boolean delta;
+
+	/** Versão (mais nova) de onde o delta parte. */
+	@Column(name = "base_version")
+	private Integer baseVersion;
+
 	@CreationTimestamp
 	@Column(name = "created_at", updatable = false)
 	private Instant createdAt;
@@ -60,4 +71,7 @@ public class ContextShardEntity {
 	@Column(name = "updated_at")
 	private Instant updatedAt;
 
+	public boolean isDeltaEncoded() {
+		return Boolean.TRUE.equals(delta);
+	}
 }
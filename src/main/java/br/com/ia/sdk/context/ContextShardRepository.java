@@ -1,10 +1,17 @@
 // src/main/java/br/com/ia/sdk/context/ContextShardRepository.java
 package br.com.ia.sdk.context;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface ContextShardRepository extends JpaRepository<ContextShardEntity, Long> {
 	
@@ -12,5 +19,38 @@ public interface ContextShardRepository extends JpaRepository<ContextShardEntity
 	  List<ContextShardEntity> findByChatId(String chatId);
 	  Optional<ContextShardEntity> findTopByChatIdAndShardTypeOrderByVersionDesc(String chatId, String shardType);
 	  Optional<ContextShardEntity> findTopByChatIdAndShardTypeOrderByVersionDescIdDesc(String chatId, String type);
+	  Optional<ContextShardEntity> findByChatIdAndShardTypeAndVersion(String chatId, String shardType, int version);
+	  List<ContextShardEntity> findByChatIdAndShardTypeAndVersionLessThanOrderByVersionDesc(String chatId,
+	      String shardType, int version, Pageable page);
+
+	  /**
+	   * Próximos (chat, type) depois do cursor, em ordem: percorre os grupos por keyset no índice
+	   * {@code idx_shard_chat_type}, sem varrer a tabela a cada lote.
+	   */
+	  @Query("select distinct e.chatId, e.shardType from ContextShardEntity e "
+	      + "where e.chatId > :chatId or (e.chatId = :chatId and e.shardType > :shardType) "
+	      + "order by e.chatId, e.shardType")
+	  List<Object[]> findGroupsAfter(@Param("chatId") String chatId, @Param("shardType") String shardType,
+	      Pageable page);
+
+	  /** Versões do (chat, type), da mais nova para a mais antiga (paginar com offset = keep). */
+	  @Query("select e.version from ContextShardEntity e where e.chatId = :chatId and e.shardType = :shardType "
+	      + "order by e.version desc")
+	  List<Integer> findVersions(@Param("chatId") String chatId, @Param("shardType") String shardType, Pageable page);
+
+	  /**
+	   * Ids do (chat, type) fora da retenção: versão até {@code maxVersion} (fora das mais novas
+	   * mantidas) e criadas antes de {@code cutoff}. Deltas apontam para versões mais novas, então
+	   * apagar as antigas nunca quebra a reconstrução das que ficam.
+	   */
+	  @Query("select e.id from ContextShardEntity e where e.chatId = :chatId and e.shardType = :shardType "
+	      + "and e.version <= :maxVersion and e.createdAt < :cutoff order by e.version")
+	  List<Long> findExpiredIds(@Param("chatId") String chatId, @Param("shardType") String shardType,
+	      @Param("maxVersion") int maxVersion, @Param("cutoff") Instant cutoff, Pageable page);
+
+	  @Transactional
+	  @Modifying
+	  @Query("delete from ContextShardEntity e where e.id in :ids")
+	  int deleteByIds(@Param("ids") Collection<Long> ids);
   
 }
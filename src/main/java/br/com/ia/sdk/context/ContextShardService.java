@@ -2,21 +2,45 @@ package br.com.ia.sdk.context;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import lombok.RequiredArgsConstructor;
-
-@RequiredArgsConstructor
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Persistência dos shards por chat, com histórico de versões.
+ * <p>
+ * A versão mais recente de cada (chat, type) é sempre gravada completa, então ler a atual é uma
+ * linha só. Ao chegar uma versão nova, a anterior vira um delta reverso (JSON Patch que, sobre a
+ * versão nova, devolve a anterior); a cada {@code snapshotEvery} versões uma fica completa, o que
+ * limita a cadeia para reconstruir versões antigas ({@link #findVersion}). Linhas antigas sem
+ * delta continuam válidas como snapshots.
+ * </p>
+ */
+@Slf4j
 public class ContextShardService {
 
 	private final ContextShardRepository repo;
 	private final ObjectMapper mapper;
+	private final int snapshotEvery;
+
+	public ContextShardService(ContextShardRepository repo, ObjectMapper mapper) {
+		this(repo, mapper, 10);
+	}
+
+	public ContextShardService(ContextShardRepository repo, ObjectMapper mapper, int snapshotEvery) {
+		this.repo = repo;
+		this.mapper = mapper;
+		this.snapshotEvery = Math.max(1, snapshotEvery);
+	}
 
 	@Transactional
 	public void upsert(String chatId, ContextShard shard) {
@@ -27,12 +51,21 @@ public class ContextShardService {
 					.findTopByChatIdAndShardTypeOrderByVersionDesc(chatId, shard.type())
 					.filter(e -> e.getVersion() == shard.version());
 
+			if (existing.isEmpty()) {
+				// versão nova: a atual passa a delta reverso a partir desta
+				repo.findTopByChatIdAndShardTypeOrderByVersionDesc(chatId, shard.type())
+						.filter(prev -> prev.getVersion() < shard.version() && !prev.isDeltaEncoded())
+						.ifPresent(prev -> toDelta(prev, json, shard.version()));
+			}
+
 			ContextShardEntity e = existing.orElseGet(ContextShardEntity::new);
 			e.setChatId(chatId);
 			e.setShardType(shard.type());
 			e.setVersion(shard.version());
 			e.setStable(shard.stable());
 			e.setPayloadJson(json);
+			e.setDelta(false);
+			e.setBaseVersion(null);
 
 			repo.save(e);
 		} catch (Exception ex) {
@@ -43,11 +76,17 @@ public class ContextShardService {
 	public List<ContextShard> findByTypes(String chatId, List<String> types) {
 		if (types == null || types.isEmpty())
 			return List.of();
-		return repo.findByChatIdAndShardTypeIn(chatId, types).stream().map(this::toShard).toList();
+		return materialize(repo.findByChatIdAndShardTypeIn(chatId, types));
 	}
 
 	public List<ContextShard> findAll(String chatId) {
-		return repo.findByChatId(chatId).stream().map(this::toShard).toList();
+		return materialize(repo.findByChatId(chatId));
+	}
+
+	/** Uma versão específica do shard, reconstruída a partir do snapshot mais próximo acima dela. */
+	@Transactional(readOnly = true)
+	public Optional<ContextShard> findVersion(String chatId, String type, int version) {
+		return repo.findByChatIdAndShardTypeAndVersion(chatId, type, version).map(e -> toShard(e, Map.of()));
 	}
 
 	/**
@@ -64,10 +103,18 @@ public class ContextShardService {
 				.toList();
 	}
 
-	private ContextShard toShard(ContextShardEntity e) {
+	/** Converte linhas em shards, resolvendo deltas com as linhas já carregadas quando possível. */
+	private List<ContextShard> materialize(List<ContextShardEntity> rows) {
+		Map<String, ContextShardEntity> loaded = new HashMap<>();
+		for (ContextShardEntity e : rows)
+			loaded.put(key(e.getShardType(), e.getVersion()), e);
+		return rows.stream().map(e -> toShard(e, loaded)).toList();
+	}
+
+	private ContextShard toShard(ContextShardEntity e, Map<String, ContextShardEntity> loaded) {
 		try {
 			@SuppressWarnings("unchecked")
-			Map<String, Object> payload = mapper.readValue(e.getPayloadJson(), Map.class);
+			Map<String, Object> payload = mapper.treeToValue(payloadNode(e, loaded), Map.class);
 			return new BasicContextShard(e.getShardType(), e.getVersion(), e.isStable(), payload);
 		} catch (Exception ex) {
 			return new BasicContextShard(e.getShardType(), e.getVersion(), e.isStable(),
@@ -75,6 +122,65 @@ public class ContextShardService {
 		}
 	}
 
+	/**
+	 * Payload completo da linha: sobe pela cadeia de deltas até um snapshot e aplica os patches
+	 * de volta até a versão pedida.
+	 */
+	private JsonNode payloadNode(ContextShardEntity e, Map<String, ContextShardEntity> loaded) throws Exception { // NOSONAR
+		List<ContextShardEntity> chain = new ArrayList<>();
+		ContextShardEntity cur = e;
+		while (cur.isDeltaEncoded()) {
+			chain.add(cur);
+			int base = cur.getBaseVersion();
+			ContextShardEntity next = loaded.get(key(cur.getShardType(), base));
+			if (next == null) {
+				next = repo.findByChatIdAndShardTypeAndVersion(cur.getChatId(), cur.getShardType(), base)
+						.orElseThrow(() -> new IllegalStateException("Versão base " + base + " ausente"));
+			}
+			cur = next;
+		}
+		JsonNode node = mapper.readTree(cur.getPayloadJson());
+		for (int i = chain.size() - 1; i >= 0; i--)
+			node = JsonPatches.apply(node, mapper.readTree(chain.get(i).getPayloadJson()));
+		return node;
+	}
+
+	/**
+	 * Troca o payload completo de {@code prev} pelo delta reverso a partir de {@code newerJson},
+	 * salvo quando a linha deve ficar como snapshot ou quando o delta não é menor.
+	 */
+	private void toDelta(ContextShardEntity prev, String newerJson, int newerVersion) {
+		try {
+			// deltas logo abaixo de prev: com snapshotEvery - 1 deles, prev fica como snapshot
+			int deltasBelow = 0;
+			for (ContextShardEntity below : repo.findByChatIdAndShardTypeAndVersionLessThanOrderByVersionDesc(
+					prev.getChatId(), prev.getShardType(), prev.getVersion(), PageRequest.of(0, snapshotEvery))) {
+				if (!below.isDeltaEncoded())
+					break;
+				deltasBelow++;
+			}
+			if (deltasBelow >= snapshotEvery - 1)
+				return;
+
+			String patch = mapper.writeValueAsString(
+					JsonPatches.diff(mapper.readTree(newerJson), mapper.readTree(prev.getPayloadJson())));
+			if (patch.length() >= prev.getPayloadJson().length())
+				return;
+
+			prev.setPayloadJson(patch);
+			prev.setDelta(true);
+			prev.setBaseVersion(newerVersion);
+			repo.save(prev);
+		} catch (Exception ex) {
+			// sem delta a linha continua completa: só ocupa mais espaço
+			log.warn("Falha ao gerar delta do shard {} v{}: {}", prev.getShardType(), prev.getVersion(), ex.getMessage());
+		}
+	}
+
+	private static String key(String type, int version) {
+		return type + "#" + version;
+	}
+
 	/**
 	 * Carrega os shards mais recentes para cada tipo solicitado e converte para
 	 * {@link ContextShard} efêmero (pronto para envio).
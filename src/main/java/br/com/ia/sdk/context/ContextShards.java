@@ -1,5 +1,6 @@
 package br.com.ia.sdk.context;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -126,33 +127,6 @@ public final class ContextShards {
 	private static Map<String, Object> extract(Object bean, String... fields) {
 		if (bean == null || fields == null || fields.length == 0)
 			return Map.of();
-		Map<String, Object> out = new LinkedHashMap<>();
-		for (String f : fields)
-			out.put(f, read(bean, f));
-		return out;
-	}
-
-	private static Object read(Object bean, String field) {
-		try {
-			var m = bean.getClass().getMethod(getterName(field));
-			return m.invoke(bean);
-		} catch (NoSuchMethodException nsme) {
-			try {
-				var f = bean.getClass().getDeclaredField(field);
-				f.setAccessible(true); // NOSONAR
-				return f.get(bean);
-			} catch (Exception ignore) {
-				return null;
-			}
-		} catch (Exception e) {
-			return null;
-		}
-	}
-
-	private static String getterName(String field) {
-		if (field == null || field.isBlank())
-			return "get";
-		String base = field.substring(0, 1).toUpperCase() + field.substring(1);
-		return "get" + base;
+		return ShardAccessors.payload(bean, Arrays.asList(fields));
 	}
 }
@@ -1,5 +1,6 @@
 package br.com.ia.sdk.context;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
@@ -7,14 +8,24 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import br.com.ia.sdk.transport.claimcheck.ClaimCheckBlobEntity;
+import br.com.ia.sdk.transport.claimcheck.ClaimCheckBlobRepository;
+import br.com.ia.sdk.transport.result.IaResultEntity;
+import br.com.ia.sdk.transport.result.IaResultRepository;
+import br.com.ia.services.idempotency.IdempotencyRecord;
+import br.com.ia.services.idempotency.IdempotencyRepository;
+
 @AutoConfiguration
-@EnableJpaRepositories(basePackageClasses = ContextShardRepository.class)
-@EntityScan(basePackageClasses = ContextShardEntity.class)
+@EnableJpaRepositories(basePackageClasses = { ContextShardRepository.class, ClaimCheckBlobRepository.class,
+		IaResultRepository.class, IdempotencyRepository.class })
+@EntityScan(basePackageClasses = { ContextShardEntity.class, ClaimCheckBlobEntity.class, IaResultEntity.class,
+		IdempotencyRecord.class })
 public class IaContextConfiguration {
 
 	@org.springframework.context.annotation.Bean
 	@ConditionalOnMissingBean
-	public ContextShardService contextShardService(ContextShardRepository repo, ObjectMapper mapper) {
-		return new ContextShardService(repo, mapper);
+	public ContextShardService contextShardService(ContextShardRepository repo, ObjectMapper mapper,
+			@Value("${erp.ia.shard-history.snapshot-every:10}") int snapshotEvery) {
+		return new ContextShardService(repo, mapper, snapshotEvery);
 	}
 }
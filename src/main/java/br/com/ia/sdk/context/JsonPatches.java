@@ -0,0 +1,87 @@
+package br.com.ia.sdk.context;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * JSON Patch (RFC 6902) mínimo para o histórico de shards: {@code add}, {@code remove} e
+ * {@code replace}. O diff desce em objetos; arrays e valores escalares alterados viram um
+ * {@code replace} inteiro (payloads de shard são pequenos e raramente têm listas longas).
+ */
+@UtilityClass
+public class JsonPatches {
+
+	private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+	/** Operações que transformam {@code source} em {@code target}. */
+	public static ArrayNode diff(JsonNode source, JsonNode target) {
+		ArrayNode ops = NODES.arrayNode();
+		diff("", source, target, ops);
+		return ops;
+	}
+
+	/** Aplica o patch sobre uma cópia de {@code doc}. */
+	public static JsonNode apply(JsonNode doc, JsonNode patch) {
+		JsonNode out = doc.deepCopy();
+		for (JsonNode op : patch) {
+			String path = op.path("path").asText();
+			String kind = op.path("op").asText();
+			if (path.isEmpty()) {
+				out = "remove".equals(kind) ? NODES.nullNode() : op.get("value").deepCopy();
+				continue;
+			}
+			int cut = path.lastIndexOf('/');
+			JsonNode parent = out.at(path.substring(0, cut));
+			String field = unescape(path.substring(cut + 1));
+			if (!(parent instanceof ObjectNode obj))
+				throw new IllegalArgumentException("Patch inválido: " + path + " não aponta para objeto");
+			switch (kind) {
+			case "add", "replace" -> obj.set(field, op.get("value").deepCopy());
+			case "remove" -> obj.remove(field);
+			default -> throw new IllegalArgumentException("Operação de patch não suportada: " + kind);
+			}
+		}
+		return out;
+	}
+
+	private static void diff(String path, JsonNode source, JsonNode target, ArrayNode ops) {
+		if (source.equals(target))
+			return;
+		if (!(source instanceof ObjectNode s) || !(target instanceof ObjectNode t)) {
+			op(ops, "replace", path).set("value", target);
+			return;
+		}
+		for (Iterator<String> it = s.fieldNames(); it.hasNext();) {
+			String f = it.next();
+			if (!t.has(f))
+				op(ops, "remove", path + "/" + escape(f));
+		}
+		for (Iterator<Map.Entry<String, JsonNode>> it = t.fields(); it.hasNext();) {
+			var e = it.next();
+			JsonNode old = s.get(e.getKey());
+			if (old == null)
+				op(ops, "add", path + "/" + escape(e.getKey())).set("value", e.getValue());
+			else
+				diff(path + "/" + escape(e.getKey()), old, e.getValue(), ops);
+		}
+	}
+
+	private static ObjectNode op(ArrayNode ops, String kind, String path) {
+		return ops.addObject().put("op", kind).put("path", path);
+	}
+
+	private static String escape(String field) {
+		return field.replace("~", "~0").replace("/", "~1");
+	}
+
+	private static String unescape(String token) {
+		return token.replace("~1", "/").replace("~0", "~");
+	}
+}
@@ -0,0 +1,28 @@
+package br.com.ia.sdk.context;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Acesso aos campos de shard de uma classe. Implementado pelas classes geradas a partir de
+ * {@link ShardField} e, como fallback, por um acessor reflexivo com MethodHandles em cache.
+ *
+ * @param <T> tipo da entidade
+ */
+public interface ShardAccessor<T> {
+
+	/** Sentinela de {@link #get} para campo desconhecido. */
+	Object ABSENT = new Object();
+
+	/** Campos anotados, na ordem de declaração (vazio no acessor reflexivo). */
+	List<String> fields();
+
+	/** Payload (campo -> valor) na ordem de {@link #fields()}. */
+	Map<String, Object> payload(T entity);
+
+	/** Valor de um campo, ou {@link #ABSENT} se o acessor não o conhece. */
+	Object get(T entity, String field);
+
+	/** Fingerprint SHA-256 (hex) de {@link #fields()}; ver {@link ShardFingerprint}. */
+	String fingerprint(T entity);
+}
@@ -0,0 +1,199 @@
+package br.com.ia.sdk.context;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Registro de {@link ShardAccessor} por classe. Usa a classe gerada pelo
+ * {@code ShardFieldProcessor} ({@code <Entidade>_ShardAccessor}) quando existir; senão um
+ * acessor reflexivo que resolve cada campo uma única vez para um MethodHandle.
+ */
+@UtilityClass
+public final class ShardAccessors {
+
+	/** Sufixo das classes geradas (ver {@code ShardFieldProcessor}). */
+	public static final String GENERATED_SUFFIX = "_ShardAccessor";
+
+	private static final ClassValue<ShardAccessor<Object>> ACCESSORS = new ClassValue<>() {
+		@Override
+		protected ShardAccessor<Object> computeValue(Class<?> type) {
+			ShardAccessor<Object> generated = loadGenerated(type);
+			return generated != null ? generated : REFLECTIVE.get(type);
+		}
+	};
+
+	private static final ClassValue<ReflectiveAccessor> REFLECTIVE = new ClassValue<>() {
+		@Override
+		protected ReflectiveAccessor computeValue(Class<?> type) {
+			return new ReflectiveAccessor(type);
+		}
+	};
+
+	/** Acessor da classe (gerado ou reflexivo). */
+	public static ShardAccessor<Object> of(Class<?> type) {
+		return ACCESSORS.get(type);
+	}
+
+	/** Nome binário da classe gerada para {@code type}. */
+	public static String generatedName(String binaryName) {
+		return binaryName.replace('$', '_') + GENERATED_SUFFIX;
+	}
+
+	/** Valor de um campo: acessor gerado quando conhece o campo, senão reflexivo. */
+	public static Object read(Object bean, String field) {
+		ShardAccessor<Object> acc = of(bean.getClass());
+		Object v = acc.get(bean, field);
+		if (v == ShardAccessor.ABSENT && !(acc instanceof ReflectiveAccessor)) {
+			v = REFLECTIVE.get(bean.getClass()).get(bean, field);
+		}
+		return v == ShardAccessor.ABSENT ? null : v;
+	}
+
+	/** Payload de {@code fields} na ordem informada. */
+	public static Map<String, Object> payload(Object bean, List<String> fields) {
+		ShardAccessor<Object> acc = of(bean.getClass());
+		if (!fields.isEmpty() && fields.equals(acc.fields()))
+			return acc.payload(bean);
+
+		Map<String, Object> out = new LinkedHashMap<>();
+		for (String f : fields)
+			out.put(f, read(bean, f));
+		return out;
+	}
+
+	/** Fingerprint de {@code fields} (formato de {@link ShardFingerprint}). */
+	public static String fingerprint(Object bean, List<String> fields) {
+		ShardAccessor<Object> acc = of(bean.getClass());
+		if (!fields.isEmpty() && fields.equals(acc.fields()))
+			return acc.fingerprint(bean);
+
+		String[] keys = fields.toArray(String[]::new);
+		Arrays.sort(keys);
+		ShardFingerprint fp = ShardFingerprint.begin();
+		String prev = null;
+		for (String k : keys) {
+			if (k.equals(prev))
+				continue; // mesma semântica do map antigo: chave repetida conta uma vez
+			fp.field(k, read(bean, k));
+			prev = k;
+		}
+		return fp.hex();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ShardAccessor<Object> loadGenerated(Class<?> type) {
+		try {
+			Class<?> gen = Class.forName(generatedName(type.getName()), true, type.getClassLoader());
+			if (!ShardAccessor.class.isAssignableFrom(gen))
+				return null;
+			return (ShardAccessor<Object>) gen.getDeclaredConstructor().newInstance();
+		} catch (ClassNotFoundException | LinkageError e) {
+			// proxies (Hibernate/ByteBuddy) estendem a entidade: usa o gerado da superclasse
+			Class<?> sup = type.getSuperclass();
+			if (sup == null || sup == Object.class)
+				return null;
+			ShardAccessor<Object> parent = ACCESSORS.get(sup);
+			return parent instanceof ReflectiveAccessor ? null : parent;
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	// ---------------- fallback reflexivo ----------------
+
+	/** Resolve getter ({@code getX}/{@code isX}) ou campo declarado, uma vez por nome. */
+	private static final class ReflectiveAccessor implements ShardAccessor<Object> {
+
+		private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+		private static final MethodHandle MISSING = MethodHandles.constant(Object.class, ABSENT);
+
+		private final Class<?> type;
+		private final Map<String, MethodHandle> handles = new ConcurrentHashMap<>();
+
+		ReflectiveAccessor(Class<?> type) {
+			this.type = type;
+		}
+
+		@Override
+		public List<String> fields() {
+			return List.of();
+		}
+
+		@Override
+		public Map<String, Object> payload(Object entity) {
+			return new LinkedHashMap<>();
+		}
+
+		@Override
+		public String fingerprint(Object entity) {
+			return ShardFingerprint.begin().hex();
+		}
+
+		@Override
+		public Object get(Object entity, String field) {
+			if (field == null || field.isEmpty())
+				return null;
+			MethodHandle mh = handles.computeIfAbsent(field, this::resolve);
+			if (mh == MISSING)
+				return null; // não quebra shard se campo não acessível
+			try {
+				return mh.invokeExact(entity);
+			} catch (Throwable e) { // NOSONAR
+				return null;
+			}
+		}
+
+		private MethodHandle resolve(String field) {
+			String base = Character.toUpperCase(field.charAt(0)) + field.substring(1);
+			MethodHandle mh = method(type, "get" + base);
+			if (mh == null)
+				mh = method(type, "is" + base);
+			if (mh == null)
+				mh = field(type, field);
+			return mh != null ? mh : MISSING;
+		}
+
+		private static MethodHandle method(Class<?> c, String name) {
+			for (Method m : c.getMethods()) {
+				if (m.getName().equals(name) && m.getParameterCount() == 0 && !Modifier.isStatic(m.getModifiers())
+						&& m.getReturnType() != void.class) {
+					try {
+						if (!m.trySetAccessible())
+							return null;
+						return MethodHandles.lookup().unreflect(m).asType(GETTER);
+					} catch (IllegalAccessException | RuntimeException e) {
+						return null;
+					}
+				}
+			}
+			return null;
+		}
+
+		private static MethodHandle field(Class<?> c, String name) {
+			for (Class<?> k = c; k != null && k != Object.class; k = k.getSuperclass()) {
+				try {
+					Field f = k.getDeclaredField(name);
+					if (Modifier.isStatic(f.getModifiers()) || !f.trySetAccessible()) // NOSONAR
+						return null;
+					return MethodHandles.lookup().unreflectGetter(f).asType(GETTER);
+				} catch (NoSuchFieldException e) {
+					// segue para a superclasse
+				} catch (IllegalAccessException | RuntimeException e) {
+					return null;
+				}
+			}
+			return null;
+		}
+	}
+}
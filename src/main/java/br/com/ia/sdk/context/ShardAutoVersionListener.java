@@ -1,12 +1,57 @@
 package br.com.ia.sdk.context;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.Type;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 
 public class ShardAutoVersionListener {
 
+	/**
+	 * Injetado quando o Hibernate instancia o listener pelo Spring (padrão no Spring Boot).
+	 * Fora disso fica nulo e todo update recalcula o fingerprint, como antes.
+	 */
+	@Autowired(required = false)
+	private ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+	/** Índice nome-da-propriedade -> posição no loaded state, por classe de entidade. */
+	private static final Map<Class<?>, Map<String, Integer>> PROPERTY_INDEX = new ConcurrentHashMap<>();
+
 	@PrePersist
+	public void onPersist(Object entity) {
+		touch(entity);
+	}
+
 	@PreUpdate
+	public void onUpdate(Object entity) {
+		if (!(entity instanceof ShardTracked st))
+			return;
+
+		var fields = st.shardFields();
+		if (fields == null || fields.isEmpty())
+			return;
+
+		// nenhum campo do shard mudou desde o load: fingerprint/versão continuam válidos
+		if (st.getShardFingerprint() != null && !shardFieldsDirty(entity, fields))
+			return;
+
+		touch(entity);
+	}
+
 	public void touch(Object entity) {
 		if (!(entity instanceof ShardTracked st))
 			return;
@@ -24,4 +69,67 @@ public class ShardAutoVersionListener {
 			st.setShardVersion(v == null || v <= 0 ? 1 : v + 1);
 		}
 	}
+
+	/**
+	 * Compara o loaded state do Hibernate (snapshot do último load/flush) com o valor atual
+	 * de cada campo do shard pelo {@code Type} da propriedade. Coleções não entram no loaded
+	 * state por cópia (é a mesma {@link PersistentCollection} da entidade): valem a troca da
+	 * instância e o dirty flag da própria coleção. Na dúvida (sem sessão, entrada ou propriedade
+	 * mapeada) responde true, mantendo o comportamento antigo.
+	 */
+	private boolean shardFieldsDirty(Object entity, List<String> fields) {
+		SessionImplementor session = session();
+		EntityEntry entry = session == null ? null : entry(session, entity);
+		if (entry == null)
+			return true;
+
+		Object[] loaded = entry.getLoadedState();
+		if (loaded == null)
+			return true;
+
+		EntityPersister persister = entry.getPersister();
+		String[] names = persister.getPropertyNames();
+		Type[] types = persister.getPropertyTypes();
+		Map<String, Integer> index = PROPERTY_INDEX.computeIfAbsent(entity.getClass(), c -> indexOf(names));
+		for (String f : fields) {
+			Integer i = index.get(f);
+			if (i == null || i >= loaded.length)
+				return true; // campo não persistente (derivado/transient): não dá para saber
+			Object current = ShardAccessors.read(entity, f);
+			if (types[i].isCollectionType()) {
+				if (current != loaded[i] || !(current instanceof PersistentCollection<?> pc) || pc.isDirty())
+					return true;
+			} else if (types[i].isDirty(loaded[i], current, session)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private SessionImplementor session() {
+		if (entityManagerFactory == null)
+			return null;
+		try {
+			EntityManagerFactory emf = entityManagerFactory.getIfAvailable();
+			EntityManager em = emf == null ? null : EntityManagerFactoryUtils.getTransactionalEntityManager(emf);
+			return em == null ? null : em.unwrap(SessionImplementor.class);
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	private static EntityEntry entry(SessionImplementor session, Object entity) {
+		try {
+			return session.getPersistenceContextInternal().getEntry(entity);
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	private static Map<String, Integer> indexOf(String[] names) {
+		Map<String, Integer> index = new HashMap<>(names.length * 2);
+		for (int i = 0; i < names.length; i++)
+			index.put(names[i], i);
+		return Map.copyOf(index);
+	}
 }
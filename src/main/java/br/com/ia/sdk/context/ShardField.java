@@ -0,0 +1,35 @@
+package br.com.ia.sdk.context;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca um campo da entidade como parte do shard. Em tempo de compilação o
+ * {@code ShardFieldProcessor} gera {@code <Entidade>_ShardAccessor} no mesmo pacote, com
+ * montagem do payload e fingerprint SHA-256 sem reflexão (ver {@link ShardAccessors}).
+ * <p>
+ * O valor é lido pelo getter convencional ({@code getX()}, ou {@code isX()} para
+ * {@code boolean}), o mesmo usado pelo caminho reflexivo.
+ * </p>
+ *
+ * <pre>{@code
+ * @Entity
+ * @EntityListeners(ShardAutoVersionListener.class)
+ * public class Projeto implements ShardTracked {
+ *     @ShardField private String nome;
+ *     @ShardField private String escopo;
+ *     ...
+ * }
+ * }</pre>
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface ShardField {
+
+	/** Chave no payload (default: nome do campo). */
+	String value() default "";
+}
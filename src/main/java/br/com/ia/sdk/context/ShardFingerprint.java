@@ -0,0 +1,90 @@
+package br.com.ia.sdk.context;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 incremental do formato histórico de fingerprint: para cada campo, em ordem
+ * alfabética de chave, {@code chave=valor.trim()\n} ({@code "null"} para nulos), em UTF-8.
+ * <p>
+ * Os bytes são escritos direto no digest a partir de um buffer reaproveitado por thread
+ * (sem montar a string intermediária), então o resultado é idêntico ao de versões
+ * anteriores e fingerprints já persistidos continuam válidos.
+ * </p>
+ * Uso (não reentrante por thread):
+ *
+ * <pre>{@code
+ * ShardFingerprint fp = ShardFingerprint.begin();
+ * fp.field("escopo", e.getEscopo());
+ * fp.field("nome", e.getNome());
+ * return fp.hex();
+ * }</pre>
+ */
+public final class ShardFingerprint {
+
+	private static final HexFormat HEX = HexFormat.of();
+	private static final ThreadLocal<ShardFingerprint> LOCAL = ThreadLocal.withInitial(ShardFingerprint::new);
+
+	private final MessageDigest md;
+	private byte[] buf = new byte[256];
+
+	private ShardFingerprint() {
+		try {
+			this.md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 indisponível", e);
+		}
+	}
+
+	/** Instância da thread atual, já zerada. */
+	public static ShardFingerprint begin() {
+		ShardFingerprint fp = LOCAL.get();
+		fp.md.reset();
+		return fp;
+	}
+
+	/** Acrescenta {@code key=valor\n}; chame em ordem alfabética de chave. */
+	public ShardFingerprint field(String key, Object value) {
+		write(key);
+		md.update((byte) '=');
+		write(value == null ? "null" : value.toString().trim());
+		md.update((byte) '\n');
+		return this;
+	}
+
+	/** Finaliza o digest em hex minúsculo (64 chars). */
+	public String hex() {
+		return HEX.formatHex(md.digest());
+	}
+
+	private void write(String s) {
+		int len = s.length();
+		if (buf.length < len * 3)
+			buf = new byte[Math.max(len * 3, buf.length * 2)];
+
+		int n = 0;
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				buf[n++] = (byte) c;
+			} else if (c < 0x800) {
+				buf[n++] = (byte) (0xC0 | (c >> 6));
+				buf[n++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				buf[n++] = (byte) (0xF0 | (cp >> 18));
+				buf[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+				buf[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+				buf[n++] = (byte) (0x80 | (cp & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				buf[n++] = (byte) '?'; // surrogate órfão: mesmo comportamento de String.getBytes(UTF_8)
+			} else {
+				buf[n++] = (byte) (0xE0 | (c >> 12));
+				buf[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buf[n++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		md.update(buf, 0, n);
+	}
+}
@@ -0,0 +1,280 @@
+package br.com.ia.sdk.context;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Seleção de context shards por relevância ao prompt, antes do envio.
+ * <p>
+ * Cada chat tem um índice léxico BM25 sobre o texto dos payloads (valores, recursivamente, e o
+ * type), atualizado de forma incremental: só shards novos ou com versão/payload alterados são
+ * reindexados. Shards estáveis vão sempre (prefixo de cache); os voláteis entram do mais ao menos
+ * relevante enquanto couberem em {@code erp.ia.shard-selection.token-budget} (estimativa de
+ * ~4 caracteres do JSON por token). A ordem original dos shards é mantida.
+ * </p>
+ * Só atua com {@code erp.ia.shard-selection.enabled=true} e a partir de
+ * {@code min-shards} shards; índices de chats sem uso por {@code idle-minutes} são descartados.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ShardSelector {
+
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+	private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	private final ObjectMapper objectMapper;
+	private final Map<String, ChatIndex> indexes = new ConcurrentHashMap<>();
+
+	@Value("${erp.ia.shard-selection.enabled:false}")
+	private boolean enabled;
+
+	@Value("${erp.ia.shard-selection.token-budget:4000}")
+	private int tokenBudget;
+
+	@Value("${erp.ia.shard-selection.min-shards:6}")
+	private int minShards;
+
+	/** Shards voláteis com score abaixo disso ficam de fora mesmo havendo orçamento. */
+	@Value("${erp.ia.shard-selection.min-score:0}")
+	private double minScore;
+
+	@Value("${erp.ia.shard-selection.bm25.k1:1.2}")
+	private double k1;
+
+	@Value("${erp.ia.shard-selection.bm25.b:0.75}")
+	private double b;
+
+	@Value("${erp.ia.shard-selection.idle-minutes:30}")
+	private long idleMinutes;
+
+	private ScheduledExecutorService purger;
+
+	@PostConstruct
+	void startPurge() {
+		if (!enabled)
+			return;
+		purger = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "ia-shard-index-purge");
+			t.setDaemon(true);
+			return t;
+		});
+		long every = Math.max(1, idleMinutes / 2);
+		purger.scheduleWithFixedDelay(this::purge, every, every, TimeUnit.MINUTES);
+	}
+
+	@PreDestroy
+	void stopPurge() {
+		if (purger != null)
+			purger.shutdownNow();
+	}
+
+	/** true se a seleção deve rodar para estes shards. */
+	public boolean appliesTo(List<ContextShard> shards) {
+		return enabled && shards != null && shards.size() >= minShards;
+	}
+
+	/**
+	 * Shards a enviar: estáveis sempre, voláteis por relevância ao prompt até o orçamento.
+	 *
+	 * @return nova lista na ordem original (a lista recebida não é alterada)
+	 */
+	public List<ContextShard> select(String chatId, String prompt, List<ContextShard> shards) {
+		ChatIndex index = indexes.computeIfAbsent(chatId == null ? "" : chatId, k -> new ChatIndex());
+		List<Doc> docs;
+		Map<Doc, Double> scores = new HashMap<>();
+		synchronized (index) {
+			index.lastUsed = System.currentTimeMillis();
+			docs = index.sync(shards, this);
+			Set<String> query = new HashSet<>(terms(prompt));
+			for (Doc d : docs)
+				scores.put(d, index.score(d, query, k1, b));
+		}
+
+		Set<Doc> chosen = new HashSet<>();
+		int used = 0;
+		for (Doc d : docs) {
+			if (d.shard.stable()) {
+				chosen.add(d);
+				used += d.tokens;
+			}
+		}
+		List<Doc> ranked = new ArrayList<>(docs);
+		ranked.removeIf(d -> d.shard.stable());
+		ranked.sort(Comparator.comparingDouble((Doc d) -> scores.get(d)).reversed());
+		for (Doc d : ranked) {
+			if (scores.get(d) < minScore)
+				break;
+			if (used + d.tokens > tokenBudget)
+				continue; // um menor e menos relevante ainda pode caber
+			chosen.add(d);
+			used += d.tokens;
+		}
+
+		List<ContextShard> out = new ArrayList<>(chosen.size());
+		for (Doc d : docs) {
+			if (chosen.contains(d))
+				out.add(d.shard);
+		}
+		log.debug("Shards selecionados por relevância para chatId {}: {} de {} (~{} tokens)", chatId, out.size(),
+				shards.size(), used);
+		return out;
+	}
+
+	private Doc index(ContextShard s) {
+		List<String> terms = new ArrayList<>(terms(s.type()));
+		if (s.payload() != null)
+			collect(s.payload().values(), terms);
+		Map<String, Integer> tf = new HashMap<>();
+		for (String t : terms)
+			tf.merge(t, 1, Integer::sum);
+
+		int chars;
+		try {
+			chars = s.payload() == null ? 0 : objectMapper.writeValueAsString(s.payload()).length();
+		} catch (JsonProcessingException e) {
+			chars = 0;
+		}
+		return new Doc(s, tf, terms.size(), (chars + s.type().length()) / 4 + 1);
+	}
+
+	private static void collect(Collection<?> values, List<String> out) {
+		for (Object v : values) {
+			if (v instanceof Map<?, ?> m)
+				collect(m.values(), out);
+			else if (v instanceof Collection<?> c)
+				collect(c, out);
+			else if (v != null)
+				out.addAll(terms(String.valueOf(v)));
+		}
+	}
+
+	/** Termos normalizados (sem acento, minúsculos, 2+ caracteres). */
+	private static List<String> terms(String text) {
+		if (text == null || text.isBlank())
+			return List.of();
+		String norm = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+				.toLowerCase(Locale.ROOT);
+		List<String> out = new ArrayList<>();
+		for (String t : SEPARATORS.split(norm)) {
+			if (t.length() >= 2)
+				out.add(t);
+		}
+		return out;
+	}
+
+	private void purge() {
+		long limit = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleMinutes);
+		indexes.values().removeIf(i -> i.lastUsed < limit);
+	}
+
+	/** Shard indexado: frequências dos termos, tamanho e custo estimado em tokens. */
+	private static final class Doc {
+		final ContextShard shard;
+		final Map<String, Integer> tf;
+		final int length;
+		final int tokens;
+
+		Doc(ContextShard shard, Map<String, Integer> tf, int length, int tokens) {
+			this.shard = shard;
+			this.tf = tf;
+			this.length = length;
+			this.tokens = tokens;
+		}
+
+		boolean sameAs(ContextShard s) {
+			return shard.version() == s.version() && shard.stable() == s.stable()
+					&& Objects.equals(shard.payload(), s.payload());
+		}
+	}
+
+	/** Índice BM25 de um chat: documentos por shard (type + ocorrência) e frequência de documentos. */
+	private static final class ChatIndex {
+		final Map<String, Doc> docs = new HashMap<>();
+		final Map<String, Integer> df = new HashMap<>();
+		long totalLength;
+		volatile long lastUsed = System.currentTimeMillis();
+
+		/**
+		 * Reindexa só o que mudou, descarta shards que saíram do request (df e tamanho total
+		 * acompanham) e devolve os documentos do request, na ordem dos shards.
+		 */
+		List<Doc> sync(List<ContextShard> shards, ShardSelector selector) {
+			Map<String, Integer> seen = new HashMap<>();
+			Set<String> keys = new HashSet<>();
+			List<Doc> out = new ArrayList<>(shards.size());
+			for (ContextShard s : shards) {
+				String key = s.type() + "#" + seen.merge(s.type(), 1, Integer::sum);
+				keys.add(key);
+				Doc d = docs.get(key);
+				if (d == null || !d.sameAs(s)) {
+					if (d != null)
+						remove(d);
+					d = selector.index(s);
+					add(key, d);
+				}
+				out.add(d);
+			}
+			docs.entrySet().removeIf(e -> {
+				if (keys.contains(e.getKey()))
+					return false;
+				remove(e.getValue());
+				return true;
+			});
+			return out;
+		}
+
+		double score(Doc d, Set<String> query, double k1, double b) {
+			int n = docs.size();
+			double avg = n == 0 ? 1 : Math.max(1, (double) totalLength / n);
+			double score = 0;
+			for (String q : query) {
+				Integer f = d.tf.get(q);
+				if (f == null)
+					continue;
+				int dfq = df.getOrDefault(q, 0);
+				double idf = Math.log(1 + (n - dfq + 0.5) / (dfq + 0.5));
+				score += idf * (f * (k1 + 1)) / (f + k1 * (1 - b + b * d.length / avg));
+			}
+			return score;
+		}
+
+		private void add(String key, Doc d) {
+			docs.put(key, d);
+			totalLength += d.length;
+			for (String t : d.tf.keySet())
+				df.merge(t, 1, Integer::sum);
+		}
+
+		private void remove(Doc d) {
+			totalLength -= d.length;
+			for (String t : d.tf.keySet())
+				df.computeIfPresent(t, (k, v) -> v <= 1 ? null : v - 1);
+		}
+	}
+}
@@ -12,8 +12,13 @@ public interface ShardTracked {
 		return true;
 	}
 
-	/** Lista de nomes de campos da entidade que compõem o shard. */
-	List<String> shardFields();
+	/**
+	 * Lista de nomes de campos da entidade que compõem o shard. Default: campos anotados
+	 * com {@link ShardField} (acessor gerado em tempo de compilação).
+	 */
+	default List<String> shardFields() {
+		return ShardAccessors.of(getClass()).fields();
+	}
 
 	/** Versão atual do shard (persistida na entidade). */
 	Integer getShardVersion();
@@ -0,0 +1,247 @@
+package br.com.ia.sdk.context.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Gera {@code <Entidade>_ShardAccessor} para toda classe com campos {@code @ShardField}:
+ * payload, leitura por nome e fingerprint SHA-256 em código direto, sem reflexão. O
+ * fingerprint percorre os campos já em ordem alfabética de chave (decidida aqui, em tempo
+ * de compilação) e escreve no digest via {@code ShardFingerprint}.
+ * <p>
+ * Registrado em {@code META-INF/services}; basta o jar do IAServer no classpath de
+ * compilação do módulo cliente.
+ * </p>
+ * O getter de cada campo é o declarado (ou herdado) na classe; sem ele, o que o Lombok gera
+ * quando a classe ou o campo tem {@code @Getter}/{@code @Data}/{@code @Value} (boolean
+ * {@code isAtivo} vira {@code isAtivo()}). Campo sem getter conhecido: a classe não ganha
+ * acessor gerado (warning) e fica no acessor reflexivo do {@code ShardAccessors}.
+ */
+@SupportedAnnotationTypes(ShardFieldProcessor.SHARD_FIELD)
+public class ShardFieldProcessor extends AbstractProcessor {
+
+	static final String SHARD_FIELD = "br.com.ia.sdk.context.ShardField";
+	private static final String CONTEXT_PKG = "br.com.ia.sdk.context.";
+	private static final String SUFFIX = "_ShardAccessor";
+	private static final Set<String> LOMBOK_GETTERS = Set.of("lombok.Getter", "lombok.Data", "lombok.Value");
+
+	/** Campo anotado: chave no payload + expressão de leitura. */
+	private record Prop(String key, String getter) {
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+		TypeElement annotation = processingEnv.getElementUtils().getTypeElement(SHARD_FIELD);
+		if (annotation == null)
+			return false;
+
+		Map<TypeElement, List<Prop>> byType = new LinkedHashMap<>();
+		Set<TypeElement> reflective = new HashSet<>();
+		for (Element e : round.getElementsAnnotatedWith(annotation)) {
+			if (e.getKind() != ElementKind.FIELD || e.getModifiers().contains(Modifier.STATIC)) {
+				error(e, "@ShardField só é suportado em campos de instância");
+				continue;
+			}
+			VariableElement field = (VariableElement) e;
+			TypeElement owner = (TypeElement) field.getEnclosingElement();
+			Prop prop = prop(owner, field);
+			if (prop == null) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+						"@ShardField sem getter (" + String.join("/", getterNames(field)) + "): "
+								+ owner.getQualifiedName() + " usará o acessor reflexivo",
+						field);
+				reflective.add(owner);
+				continue;
+			}
+			byType.computeIfAbsent(owner, k -> new ArrayList<>()).add(prop);
+		}
+
+		for (var entry : byType.entrySet()) {
+			if (reflective.contains(entry.getKey()) || hasDuplicateKeys(entry.getKey(), entry.getValue()))
+				continue;
+			try {
+				write(entry.getKey(), entry.getValue());
+			} catch (IOException ex) {
+				error(entry.getKey(), "falha ao gerar acessor de shard: " + ex.getMessage());
+			}
+		}
+		return false;
+	}
+
+	private boolean hasDuplicateKeys(TypeElement owner, List<Prop> props) {
+		Set<String> seen = new HashSet<>();
+		for (Prop p : props) {
+			if (!seen.add(p.key())) {
+				error(owner, "@ShardField com chave repetida: " + p.key());
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Prop prop(TypeElement owner, VariableElement field) {
+		String name = field.getSimpleName().toString();
+		String key = name;
+		for (var mirror : field.getAnnotationMirrors()) {
+			if (!mirror.getAnnotationType().toString().equals(SHARD_FIELD))
+				continue;
+			for (var v : mirror.getElementValues().entrySet()) {
+				if (v.getKey().getSimpleName().contentEquals("value")) {
+					String s = String.valueOf(v.getValue().getValue());
+					if (!s.isBlank())
+						key = s;
+				}
+			}
+		}
+		String getter = getterOf(owner, field);
+		return getter == null ? null : new Prop(key, getter + "()");
+	}
+
+	/** Getter existente na classe (ou herdado); senão o do Lombok, se ele for gerar; senão null. */
+	private String getterOf(TypeElement owner, VariableElement field) {
+		List<String> names = getterNames(field);
+		Set<String> declared = new HashSet<>();
+		for (Element m : processingEnv.getElementUtils().getAllMembers(owner)) {
+			if (m.getKind() == ElementKind.METHOD && !m.getModifiers().contains(Modifier.STATIC)
+					&& !m.getModifiers().contains(Modifier.PRIVATE) && ((ExecutableElement) m).getParameters().isEmpty())
+				declared.add(m.getSimpleName().toString());
+		}
+		for (String n : names) {
+			if (declared.contains(n))
+				return n;
+		}
+		// getters do Lombok ainda podem não estar na árvore quando este processor roda
+		return lombokGetter(owner) || lombokGetter(field) ? names.get(0) : null;
+	}
+
+	/**
+	 * Nomes de getter do campo, na ordem de preferência: regra do Lombok primeiro ({@code is}
+	 * só para {@code boolean} primitivo, sem repetir o prefixo de {@code isAtivo}), depois as
+	 * alternativas e o acessor de record ({@code nome()}).
+	 */
+	private static List<String> getterNames(VariableElement field) {
+		String name = field.getSimpleName().toString();
+		String cap = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		List<String> names = new ArrayList<>(4);
+		if (field.asType().getKind() == TypeKind.BOOLEAN) {
+			if (name.length() > 2 && name.startsWith("is") && Character.isUpperCase(name.charAt(2)))
+				names.add(name);
+			names.add("is" + cap);
+		}
+		names.add("get" + cap);
+		if (!names.contains(name))
+			names.add(name);
+		return names;
+	}
+
+	private static boolean lombokGetter(Element e) {
+		for (var mirror : e.getAnnotationMirrors()) {
+			if (LOMBOK_GETTERS.contains(mirror.getAnnotationType().toString()))
+				return true;
+		}
+		return false;
+	}
+
+	private void write(TypeElement owner, List<Prop> props) throws IOException {
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(owner);
+		String pkgName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+		String binary = processingEnv.getElementUtils().getBinaryName(owner).toString();
+		String simpleBinary = pkgName.isEmpty() ? binary : binary.substring(pkgName.length() + 1);
+		String genSimple = simpleBinary.replace('$', '_') + SUFFIX;
+		String entity = owner.getQualifiedName().toString();
+
+		List<Prop> sorted = new ArrayList<>(props);
+		sorted.sort(Comparator.comparing(Prop::key));
+
+		StringBuilder src = new StringBuilder(2048);
+		if (!pkgName.isEmpty())
+			src.append("package ").append(pkgName).append(";\n\n");
+		src.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n");
+		src.append("public final class ").append(genSimple).append(" implements ").append(CONTEXT_PKG)
+				.append("ShardAccessor<Object> {\n\n");
+
+		// fields()
+		src.append("\tprivate static final java.util.List<String> FIELDS = java.util.List.of(");
+		for (int i = 0; i < props.size(); i++) {
+			src.append(i == 0 ? "" : ", ").append(literal(props.get(i).key()));
+		}
+		src.append(");\n\n");
+		src.append("\t@Override\n\tpublic java.util.List<String> fields() {\n\t\treturn FIELDS;\n\t}\n\n");
+
+		// payload()
+		src.append("\t@Override\n\tpublic java.util.Map<String, Object> payload(Object bean) {\n");
+		src.append("\t\t").append(entity).append(" e = (").append(entity).append(") bean;\n");
+		src.append("\t\tjava.util.Map<String, Object> m = new java.util.LinkedHashMap<>(")
+				.append(props.size() * 2).append(");\n");
+		for (Prop p : props) {
+			src.append("\t\tm.put(").append(literal(p.key())).append(", e.").append(p.getter()).append(");\n");
+		}
+		src.append("\t\treturn m;\n\t}\n\n");
+
+		// get()
+		src.append("\t@Override\n\tpublic Object get(Object bean, String field) {\n");
+		src.append("\t\t").append(entity).append(" e = (").append(entity).append(") bean;\n");
+		src.append("\t\tswitch (field) {\n");
+		for (Prop p : props) {
+			src.append("\t\tcase ").append(literal(p.key())).append(":\n\t\t\treturn e.").append(p.getter())
+					.append(";\n");
+		}
+		src.append("\t\tdefault:\n\t\t\treturn ABSENT;\n\t\t}\n\t}\n\n");
+
+		// fingerprint()
+		src.append("\t@Override\n\tpublic String fingerprint(Object bean) {\n");
+		src.append("\t\t").append(entity).append(" e = (").append(entity).append(") bean;\n");
+		src.append("\t\treturn ").append(CONTEXT_PKG).append("ShardFingerprint.begin()");
+		for (Prop p : sorted) {
+			src.append("\n\t\t\t\t.field(").append(literal(p.key())).append(", e.").append(p.getter()).append(')');
+		}
+		src.append("\n\t\t\t\t.hex();\n\t}\n}\n");
+
+		String genName = pkgName.isEmpty() ? genSimple : pkgName + "." + genSimple;
+		JavaFileObject file = processingEnv.getFiler().createSourceFile(genName, owner);
+		try (Writer w = file.openWriter()) {
+			w.write(src.toString());
+		}
+	}
+
+	private static String literal(String s) {
+		StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+		for (char c : s.toCharArray()) {
+			if (c == '"' || c == '\\')
+				sb.append('\\');
+			sb.append(c);
+		}
+		return sb.append('"').toString();
+	}
+
+	private void error(Element e, String msg) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, e);
+	}
+}
@@ -0,0 +1,71 @@
+package br.com.ia.sdk.transport;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.messaging.MessageHeaders;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Headers Kafka trocados entre o SDK ({@code PromptExecutorImpl}) e o {@code IaProcessor}.
+ */
+@UtilityClass
+public class IaHeaders {
+
+	/** Prazo absoluto do request (epoch ms). Passado dele ninguém mais espera a resposta. */
+	public static final String DEADLINE = "ia-deadline";
+
+	/** Instante do envio (epoch ms); separa requests anteriores e posteriores a um cancelamento. */
+	public static final String SENT_AT = "ia-sent-at";
+
+	/** Id único de cada envio (UUID); chave de idempotência no processor. */
+	public static final String REQUEST_ID = "ia-request-id";
+
+	/** SHA-256 do corpo completo do request; ecoado na resposta e usado pelo result store. */
+	public static final String REQUEST_HASH = "ia-request-hash";
+
+	/** Tipo da mensagem em {@code ia.control} (hoje só {@link #CANCEL}). */
+	public static final String CONTROL = "ia-control";
+	public static final String CANCEL = "cancel";
+	/** Instante do cancelamento (epoch ms). */
+	public static final String CANCEL_AT = "ia-cancel-at";
+
+	/** Prazo do request, ou 0 se o produtor não informou (produtores antigos). */
+	public static long deadlineOf(MessageHeaders headers) {
+		return longOf(headers.get(DEADLINE));
+	}
+
+	/** Id do envio, ou null se o produtor não informou (sem idempotência). */
+	public static String requestIdOf(MessageHeaders headers) {
+		Object v = headers.get(REQUEST_ID);
+		if (v instanceof byte[] b)
+			v = new String(b, StandardCharsets.UTF_8);
+		return v == null ? null : v.toString().replace("\"", "");
+	}
+
+	/** Instante do envio, ou 0 se o produtor não informou. */
+	public static long sentAtOf(MessageHeaders headers) {
+		return longOf(headers.get(SENT_AT));
+	}
+
+	/** true se há prazo e ele já passou. */
+	public static boolean expired(long deadline) {
+		return deadline > 0 && System.currentTimeMillis() >= deadline;
+	}
+
+	/** Lê header numérico vindo como número, String ou bytes (conforme o header mapper). */
+	public static long longOf(Object v) {
+		if (v instanceof Number n)
+			return n.longValue();
+		if (v instanceof byte[] b)
+			v = new String(b, StandardCharsets.UTF_8);
+		if (v instanceof String s && !s.isBlank()) {
+			try {
+				return Long.parseLong(s.trim().replace("\"", ""));
+			} catch (NumberFormatException e) {
+				return 0;
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,54 @@
+package br.com.ia.sdk.transport;
+
+import java.io.IOException;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * (De)serialização dos payloads de ia.requests / ia.responses em {@link WireFormat}.
+ * <p>
+ * O mapper Smile é uma cópia do {@code ObjectMapper} da aplicação (mesmos módulos e
+ * features), trocando só a factory. A escrita usa um buffer reaproveitado por thread.
+ * </p>
+ */
+@Component
+public class IaWireCodec {
+
+	private static final ThreadLocal<ByteArrayBuilder> BUFFER = ThreadLocal
+			.withInitial(() -> new ByteArrayBuilder(16 * 1024));
+
+	private final ObjectMapper json;
+	private final ObjectMapper smile;
+
+	public IaWireCodec(ObjectMapper objectMapper) {
+		this.json = objectMapper;
+		this.smile = objectMapper.copyWith(new SmileFactory());
+	}
+
+	public ObjectMapper mapper(WireFormat format) {
+		return format == WireFormat.SMILE ? smile : json;
+	}
+
+	/**
+	 * Serializa no buffer da thread e o devolve (válido até a próxima chamada na mesma
+	 * thread); use {@code size()} para validar e {@code toByteArray()} para enviar.
+	 */
+	public ByteArrayBuilder write(Object value, WireFormat format) throws IOException {
+		ByteArrayBuilder buf = BUFFER.get();
+		buf.reset();
+		mapper(format).writeValue(buf, value);
+		return buf;
+	}
+
+	public byte[] encode(Object value, WireFormat format) throws IOException {
+		return mapper(format).writeValueAsBytes(value);
+	}
+
+	public <T> T decode(byte[] data, WireFormat format, Class<T> type) throws IOException {
+		return mapper(format).readValue(data, type);
+	}
+}
@@ -0,0 +1,46 @@
+package br.com.ia.sdk.transport;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.util.MimeType;
+
+/**
+ * Formatos aceitos em ia.requests / ia.responses, negociados pelo header {@code contentType}.
+ * Mensagem sem header (ou com tipo desconhecido) é JSON, o que mantém compatíveis produtores
+ * e consumidores de versões anteriores.
+ */
+public enum WireFormat {
+
+	JSON("application/json"),
+	SMILE("application/x-jackson-smile");
+
+	private final String mimeType;
+
+	WireFormat(String mimeType) {
+		this.mimeType = mimeType;
+	}
+
+	public String mimeType() {
+		return mimeType;
+	}
+
+	public MimeType toMimeType() {
+		return MimeType.valueOf(mimeType);
+	}
+
+	/** Resolve pelo valor do header (String, MimeType ou bytes); JSON quando não reconhece. */
+	public static WireFormat fromContentType(Object contentType) {
+		if (contentType == null)
+			return JSON;
+		String ct = contentType instanceof byte[] b ? new String(b, StandardCharsets.UTF_8)
+				: contentType.toString();
+		return ct.contains("smile") ? SMILE : JSON;
+	}
+
+	/** Valor de configuração ({@code json}/{@code smile}, sem diferenciar caixa). */
+	public static WireFormat of(String name) {
+		if (name == null || name.isBlank())
+			return JSON;
+		return "smile".equalsIgnoreCase(name.trim()) ? SMILE : JSON;
+	}
+}
@@ -0,0 +1,40 @@
+package br.com.ia.sdk.transport.claimcheck;
+
+import java.time.Instant;
+
+import org.hibernate.annotations.CreationTimestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Table(name = "ia_claim_check", indexes = { @Index(name = "idx_claim_check_created", columnList = "created_at") })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClaimCheckBlobEntity {
+
+	@Id
+	@Column(name = "ref", length = 36)
+	private String ref;
+
+	/** Corpo serializado (JSON ou Smile, conforme o contentType da mensagem) */
+	@Lob
+	@Column(name = "data", nullable = false)
+	private byte[] data;
+
+	@CreationTimestamp
+	@Column(name = "created_at", updatable = false)
+	private Instant createdAt;
+}
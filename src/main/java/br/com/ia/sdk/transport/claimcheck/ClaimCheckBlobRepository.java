@@ -0,0 +1,17 @@
+package br.com.ia.sdk.transport.claimcheck;
+
+import java.time.Instant;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface ClaimCheckBlobRepository extends JpaRepository<ClaimCheckBlobEntity, String> {
+
+	@Transactional
+	@Modifying
+	@Query("delete from ClaimCheckBlobEntity b where b.createdAt < :cutoff")
+	int deleteCreatedBefore(@Param("cutoff") Instant cutoff);
+}
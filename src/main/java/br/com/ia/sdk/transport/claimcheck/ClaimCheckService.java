@@ -0,0 +1,148 @@
+package br.com.ia.sdk.transport.claimcheck;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+
+import br.com.ia.model.IaRequest;
+import br.com.ia.model.IaResponse;
+import br.com.ia.sdk.transport.IaWireCodec;
+import br.com.ia.sdk.transport.WireFormat;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Claim-check de ia.requests / ia.responses: corpos acima de
+ * {@code erp.ia.claim-check.threshold-bytes} vão para o {@link ClaimCheckStore} e a mensagem
+ * leva só um envelope ({@code chatId} + {@code claimCheck}). O receptor resolve o envelope
+ * lendo o corpo em streaming, no mesmo formato (JSON/Smile) da mensagem.
+ * <p>
+ * Corpos de request ficam no store até a retenção ({@code erp.ia.claim-check.retention-minutes}),
+ * pois uma reentrega do Kafka precisa relê-los; os de response são removidos assim que lidos.
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClaimCheckService {
+
+	private final ClaimCheckStore store;
+	private final IaWireCodec codec;
+
+	@Value("${erp.ia.claim-check.enabled:false}")
+	private boolean enabled;
+
+	@Value("${erp.ia.claim-check.threshold-bytes:${erp.ia.max-payload-size:30000}}")
+	private int thresholdBytes;
+
+	@Value("${erp.ia.claim-check.retention-minutes:60}")
+	private long retentionMinutes;
+
+	private ScheduledExecutorService purger;
+
+	@PostConstruct
+	void startPurge() {
+		if (!enabled || retentionMinutes <= 0)
+			return;
+		purger = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "ia-claim-check-purge");
+			t.setDaemon(true);
+			return t;
+		});
+		long every = Math.max(1, retentionMinutes / 4);
+		purger.scheduleWithFixedDelay(this::purge, every, every, TimeUnit.MINUTES);
+	}
+
+	@PreDestroy
+	void stopPurge() {
+		if (purger != null)
+			purger.shutdownNow();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/** true se um corpo serializado com {@code size} bytes deve ir para o store. */
+	public boolean exceeds(int size) {
+		return enabled && size > thresholdBytes;
+	}
+
+	/** Grava o buffer no store e devolve a referência. */
+	public String checkIn(ByteArrayBuilder body) throws IOException {
+		byte[] data = body.toByteArray();
+		String ref = store.put(data, data.length);
+		log.debug("Claim-check gravado: {} ({} bytes)", ref, data.length);
+		return ref;
+	}
+
+	/** Envelope de request: só o chatId e a referência. */
+	public IaRequest requestEnvelope(String chatId, String ref) {
+		IaRequest env = new IaRequest();
+		env.setChatId(chatId);
+		env.setClaimCheck(ref);
+		return env;
+	}
+
+	/**
+	 * Substitui a resposta por um envelope quando o corpo serializado passa do limite; senão
+	 * devolve a própria resposta.
+	 */
+	public IaResponse offload(IaResponse response, WireFormat format) throws IOException {
+		if (!enabled || response.getResposta() == null || response.getResposta().length() * 3L <= thresholdBytes)
+			return response; // nem no pior caso de UTF-8 passaria do limite: não serializa
+
+		ByteArrayBuilder body = codec.write(response, format);
+		if (body.size() <= thresholdBytes)
+			return response;
+
+		IaResponse env = new IaResponse();
+		env.setChatId(response.getChatId());
+		env.setSuccess(response.isSuccess());
+		env.setClaimCheck(checkIn(body));
+		return env;
+	}
+
+	/** Lê o request referenciado pelo envelope. */
+	public IaRequest resolveRequest(IaRequest envelope, WireFormat format) throws IOException {
+		return resolve(envelope.getClaimCheck(), format, IaRequest.class);
+	}
+
+	/** Lê a resposta referenciada pelo envelope e libera o corpo. */
+	public IaResponse resolveResponse(IaResponse envelope, WireFormat format) throws IOException {
+		IaResponse full = resolve(envelope.getClaimCheck(), format, IaResponse.class);
+		store.delete(envelope.getClaimCheck());
+		return full;
+	}
+
+	private <T> T resolve(String ref, WireFormat format, Class<T> type) throws IOException {
+		try (InputStream in = store.open(ref)) {
+			return codec.mapper(format).readValue(in, type);
+		} catch (FileNotFoundException e) {
+			// sem causa IOException: não é falha transitória, não adianta reprocessar
+			throw new IllegalStateException("Claim-check inexistente ou expirado: " + ref);
+		}
+	}
+
+	private void purge() {
+		try {
+			int n = store.purgeOlderThan(Instant.now().minus(Duration.ofMinutes(retentionMinutes)));
+			if (n > 0)
+				log.info("Claim-checks expurgados: {}", n);
+		} catch (RuntimeException e) {
+			log.warn("Falha no expurgo de claim-checks: {}", e.toString());
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package br.com.ia.sdk.transport.claimcheck;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+
+/**
+ * Armazenamento dos corpos grandes de ia.requests / ia.responses (claim-check): só a
+ * referência devolvida por {@link #put} trafega no Kafka.
+ * <p>
+ * Implementações: {@link FileSystemClaimCheckStore} (padrão, diretório compartilhado) e
+ * {@link JpaClaimCheckStore} (datasource da aplicação), escolhidas por
+ * {@code erp.ia.claim-check.store}.
+ * </p>
+ */
+public interface ClaimCheckStore {
+
+	/** Grava {@code data[0..length)} e devolve a referência. */
+	String put(byte[] data, int length) throws IOException;
+
+	/**
+	 * Abre o corpo para leitura; o chamador fecha o stream.
+	 *
+	 * @throws java.io.FileNotFoundException referência inexistente ou já expurgada
+	 */
+	InputStream open(String ref) throws IOException;
+
+	/** Remove o corpo (silencioso se não existir). */
+	void delete(String ref);
+
+	/** Remove corpos gravados antes de {@code cutoff}; devolve quantos. */
+	int purgeOlderThan(Instant cutoff);
+}
@@ -0,0 +1,136 @@
+package br.com.ia.sdk.transport.claimcheck;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Claim-check em diretório local/compartilhado (NFS, volume montado nos pods do SDK e do
+ * processor). Cada corpo é um arquivo {@code <uuid>.bin}, publicado com move atômico, e a
+ * leitura é em streaming direto do arquivo.
+ * <p>
+ * O corpo inclui {@code options.api_key} e o contexto de negócio: o diretório
+ * ({@code erp.ia.claim-check.dir}) é obrigatório, sem default em {@code java.io.tmpdir}, e em
+ * sistemas POSIX é criado com 0700 e os arquivos com 0600.
+ * </p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "erp.ia.claim-check.store", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemClaimCheckStore implements ClaimCheckStore {
+
+	private static final Pattern REF = Pattern.compile("[0-9a-f\\-]{36}");
+	private static final String EXT = ".bin";
+	private static final FileAttribute<Set<PosixFilePermission>> DIR_PERMS = PosixFilePermissions
+			.asFileAttribute(PosixFilePermissions.fromString("rwx------"));
+	private static final FileAttribute<Set<PosixFilePermission>> FILE_PERMS = PosixFilePermissions
+			.asFileAttribute(PosixFilePermissions.fromString("rw-------"));
+
+	@Value("${erp.ia.claim-check.dir:}")
+	private String dirConfig;
+
+	private Path dir;
+
+	@PostConstruct
+	void init() {
+		dir = dirConfig == null || dirConfig.isBlank() ? null : Path.of(dirConfig);
+	}
+
+	@Override
+	public String put(byte[] data, int length) throws IOException {
+		Path d = directory();
+		boolean posix = posix(d);
+		if (!Files.isDirectory(d)) {
+			if (posix)
+				Files.createDirectories(d, DIR_PERMS);
+			else
+				Files.createDirectories(d);
+		}
+		String ref = UUID.randomUUID().toString();
+		Path tmp = d.resolve(ref + ".tmp");
+		if (posix)
+			Files.createFile(tmp, FILE_PERMS);
+		else
+			Files.createFile(tmp);
+		try (OutputStream out = Files.newOutputStream(tmp, StandardOpenOption.WRITE)) {
+			out.write(data, 0, length);
+		}
+		Files.move(tmp, file(ref), StandardCopyOption.ATOMIC_MOVE);
+		return ref;
+	}
+
+	@Override
+	public InputStream open(String ref) throws IOException {
+		try {
+			return Files.newInputStream(file(ref));
+		} catch (NoSuchFileException e) {
+			throw new FileNotFoundException(ref);
+		}
+	}
+
+	@Override
+	public void delete(String ref) {
+		try {
+			Files.deleteIfExists(file(ref));
+		} catch (IOException | IllegalArgumentException e) {
+			log.debug("Falha ao remover claim-check {}: {}", ref, e.toString());
+		}
+	}
+
+	@Override
+	public int purgeOlderThan(Instant cutoff) {
+		if (dir == null || !Files.isDirectory(dir))
+			return 0;
+		int removed = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+			for (Path f : files) {
+				try {
+					if (Files.getLastModifiedTime(f).toInstant().isBefore(cutoff) && Files.deleteIfExists(f))
+						removed++;
+				} catch (IOException e) {
+					log.debug("Falha ao expurgar {}: {}", f, e.toString());
+				}
+			}
+		} catch (IOException e) {
+			log.warn("Falha ao listar claim-checks em {}: {}", dir, e.toString());
+		}
+		return removed;
+	}
+
+	private Path file(String ref) throws IOException {
+		if (ref == null || !REF.matcher(ref).matches())
+			throw new IllegalArgumentException("Referência de claim-check inválida: " + ref);
+		return directory().resolve(ref + EXT);
+	}
+
+	private Path directory() throws IOException {
+		if (dir == null)
+			throw new IOException("erp.ia.claim-check.dir não configurado (store filesystem exige diretório explícito)");
+		return dir;
+	}
+
+	private static boolean posix(Path p) {
+		return p.getFileSystem().supportedFileAttributeViews().contains("posix");
+	}
+}
@@ -0,0 +1,49 @@
+package br.com.ia.sdk.transport.claimcheck;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Claim-check na tabela {@code ia_claim_check} do datasource da aplicação. Útil quando SDK e
+ * processor não compartilham disco; o corpo é lido inteiro do banco e exposto como stream.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "erp.ia.claim-check.store", havingValue = "jpa")
+public class JpaClaimCheckStore implements ClaimCheckStore {
+
+	private final ClaimCheckBlobRepository repository;
+
+	@Override
+	public String put(byte[] data, int length) {
+		String ref = UUID.randomUUID().toString();
+		byte[] body = length == data.length ? data : Arrays.copyOf(data, length);
+		repository.save(ClaimCheckBlobEntity.builder().ref(ref).data(body).build());
+		return ref;
+	}
+
+	@Override
+	public InputStream open(String ref) throws FileNotFoundException {
+		ClaimCheckBlobEntity e = repository.findById(ref).orElseThrow(() -> new FileNotFoundException(ref));
+		return new ByteArrayInputStream(e.getData());
+	}
+
+	@Override
+	public void delete(String ref) {
+		repository.deleteById(ref);
+	}
+
+	@Override
+	public int purgeOlderThan(Instant cutoff) {
+		return repository.deleteCreatedBefore(cutoff);
+	}
+}
@@ -0,0 +1,42 @@
+package br.com.ia.sdk.transport.result;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Table(name = "ia_result", indexes = { @Index(name = "idx_result_stored", columnList = "stored_at") })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IaResultEntity {
+
+	/** chatId (correlação) do request; o último resultado do chat sobrescreve o anterior */
+	@Id
+	@Column(name = "correlation_id", length = 128)
+	private String correlationId;
+
+	/** SHA-256 do corpo do request (header ia-request-hash); null para produtores antigos */
+	@Column(name = "request_hash", length = 64)
+	private String requestHash;
+
+	/** IaResponse em Smile */
+	@Lob
+	@Column(name = "data", nullable = false)
+	private byte[] data;
+
+	@Column(name = "stored_at", nullable = false)
+	private Instant storedAt;
+}
@@ -0,0 +1,17 @@
+package br.com.ia.sdk.transport.result;
+
+import java.time.Instant;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface IaResultRepository extends JpaRepository<IaResultEntity, String> {
+
+	@Transactional
+	@Modifying
+	@Query("delete from IaResultEntity r where r.storedAt < :cutoff")
+	int deleteStoredBefore(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,160 @@
+package br.com.ia.sdk.transport.result;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import br.com.ia.model.IaResponse;
+import br.com.ia.sdk.transport.IaWireCodec;
+import br.com.ia.sdk.transport.WireFormat;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resultados concluídos (tabela {@code ia_result}), por correlação, durante
+ * {@code erp.ia.result-store.retention-minutes}. Uma resposta que chega depois do timeout do
+ * SDK não se perde: fica disponível em {@code PromptExecutor.fetchResult} e, com
+ * {@code erp.ia.result-store.reattach=true}, um novo envio do mesmo request (mesmo chatId e
+ * mesmo {@code ia-request-hash}) devolve o resultado guardado sem chamar o modelo de novo.
+ * <p>
+ * Guarda só respostas de sucesso, em Smile (compacto). Falha ao gravar nunca afeta a entrega
+ * da resposta; só é logada. {@link #saveAsync} grava numa thread própria (fila de
+ * {@code erp.ia.result-store.write-queue}; cheia, grava na thread de quem chamou), para o
+ * encode e o insert não atrasarem a entrega.
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IaResultStore {
+
+	private final IaResultRepository repository;
+	private final IaWireCodec codec;
+
+	@Value("${erp.ia.result-store.enabled:true}")
+	private boolean enabled;
+
+	@Value("${erp.ia.result-store.retention-minutes:1440}")
+	private long retentionMinutes;
+
+	@Value("${erp.ia.result-store.reattach:false}")
+	private boolean reattach;
+
+	@Value("${erp.ia.result-store.write-queue:1000}")
+	private int writeQueue;
+
+	private ScheduledExecutorService purger;
+	private ExecutorService writer;
+
+	@PostConstruct
+	void startPurge() {
+		if (!enabled)
+			return;
+		writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, writeQueue)),
+				r -> {
+					Thread t = new Thread(r, "ia-result-writer");
+					t.setDaemon(true);
+					return t;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+		if (retentionMinutes <= 0)
+			return;
+		purger = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "ia-result-purge");
+			t.setDaemon(true);
+			return t;
+		});
+		long every = Math.max(1, retentionMinutes / 4);
+		purger.scheduleWithFixedDelay(this::purge, every, every, TimeUnit.MINUTES);
+	}
+
+	@PreDestroy
+	void stopPurge() throws InterruptedException {
+		if (purger != null)
+			purger.shutdownNow();
+		if (writer != null) {
+			writer.shutdown(); // grava o que já está na fila
+			writer.awaitTermination(5, TimeUnit.SECONDS);
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public boolean isReattach() {
+		return enabled && reattach;
+	}
+
+	/** Como {@link #save}, fora da thread de quem chama. */
+	public void saveAsync(String correlationId, String requestHash, IaResponse response) {
+		if (!enabled || correlationId == null || response == null || !response.isSuccess())
+			return;
+		if (writer == null || writer.isShutdown()) {
+			save(correlationId, requestHash, response);
+			return;
+		}
+		writer.execute(() -> save(correlationId, requestHash, response));
+	}
+
+	/** Guarda a resposta (sobrescreve o resultado anterior da mesma correlação). */
+	public void save(String correlationId, String requestHash, IaResponse response) {
+		if (!enabled || correlationId == null || response == null || !response.isSuccess())
+			return;
+		try {
+			repository.save(IaResultEntity.builder()
+					.correlationId(correlationId)
+					.requestHash(requestHash)
+					.data(codec.encode(response, WireFormat.SMILE))
+					.storedAt(Instant.now())
+					.build());
+		} catch (IOException | RuntimeException e) {
+			log.warn("Falha ao gravar resultado de {} no result store: {}", correlationId, e.getMessage());
+		}
+	}
+
+	/** Último resultado da correlação dentro da retenção. */
+	public Optional<IaResponse> find(String correlationId) {
+		return enabled && correlationId != null ? load(repository.findById(correlationId)) : Optional.empty();
+	}
+
+	/** Resultado da correlação produzido pelo mesmo request (mesmo hash). */
+	public Optional<IaResponse> find(String correlationId, String requestHash) {
+		if (!enabled || correlationId == null || requestHash == null)
+			return Optional.empty();
+		return load(repository.findById(correlationId).filter(e -> requestHash.equals(e.getRequestHash())));
+	}
+
+	private Optional<IaResponse> load(Optional<IaResultEntity> entity) {
+		Instant cutoff = Instant.now().minus(Duration.ofMinutes(retentionMinutes));
+		return entity.filter(e -> retentionMinutes <= 0 || e.getStoredAt().isAfter(cutoff)).flatMap(e -> {
+			try {
+				return Optional.of(codec.decode(e.getData(), WireFormat.SMILE, IaResponse.class));
+			} catch (IOException ex) {
+				log.warn("Resultado ilegível para {}: {}", e.getCorrelationId(), ex.getMessage());
+				return Optional.empty();
+			}
+		});
+	}
+
+	private void purge() {
+		try {
+			int n = repository.deleteStoredBefore(Instant.now().minus(Duration.ofMinutes(retentionMinutes)));
+			if (n > 0)
+				log.debug("Result store: {} resultados expirados removidos", n);
+		} catch (RuntimeException e) {
+			log.warn("Falha ao expurgar result store: {}", e.getMessage());
+		}
+	}
+}
@@ -2,11 +2,16 @@ package br.com.ia.services;
 
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 
 import br.com.ia.model.IaResponse;
+import br.com.ia.sdk.transport.IaHeaders;
+import br.com.ia.sdk.transport.WireFormat;
+import br.com.ia.sdk.transport.claimcheck.ClaimCheckService;
+import br.com.ia.sdk.transport.result.IaResultStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -22,6 +27,8 @@ import lombok.extern.slf4j.Slf4j;
 public class IAResponseConsumer {
 
 	private final PendingIaRequestStore pendingStore;
+	private final ClaimCheckService claimChecks;
+	private final IaResultStore resultStore;
 
 	/**
 	 * Consome respostas da IA e resolve os futures pendentes
@@ -29,13 +36,22 @@ public class IAResponseConsumer {
 	 * @param response   resposta da IA
 	 * @param messageKey chave da mensagem Kafka
 	 * @param chatId     ID do chat (usado como correlação)
+	 * @param contentType formato do payload (JSON/Smile), usado para ler claim-checks
+	 * @param requestHash hash do request ecoado pelo processor (result store)
 	 */
 	@KafkaListener(topics = "ia.responses", groupId = "ia-server-responses")
 	public void processIaResponse(@Payload IaResponse response,
 			@Header(value = KafkaHeaders.RECEIVED_KEY, required = false) String messageKey,
-			@Header(value = "chatId", required = false) String chatId) {
+			@Header(value = "chatId", required = false) String chatId,
+			@Header(value = MessageHeaders.CONTENT_TYPE, required = false) Object contentType,
+			@Header(value = IaHeaders.REQUEST_HASH, required = false) String requestHash) {
 
 		try {
+			// envelope de claim-check: resolve o corpo completo antes de entregar
+			if (response.getClaimCheck() != null) {
+				response = claimChecks.resolveResponse(response, WireFormat.fromContentType(contentType));
+			}
+
 			// Prioriza chatId do header, depois messageKey, por fim o chatId da resposta
 			String correlationId = chatId != null ? chatId : messageKey != null ? messageKey : response.getChatId();
 
@@ -46,11 +62,15 @@ public class IAResponseConsumer {
 
 			log.info("Recebida resposta da IA para chatId: {} - Sucesso: {}", correlationId, response.isSuccess());
 
-			// Resolve o future pendente
+			// Resolve o future pendente primeiro: quem espera não paga o encode/insert do result store
 			boolean resolved = pendingStore.complete(correlationId, response);
 
+			// Guarda em segundo plano: resposta atrasada/órfã (ou reenvio com reattach) não se perde
+			resultStore.saveAsync(correlationId, requestHash, response);
+
 			if (!resolved) {
-				log.warn("Nenhum request pendente encontrado para chatId: {} - Response orfa", correlationId);
+				log.warn("Nenhum request pendente encontrado para chatId: {} - Response orfa{}", correlationId,
+						resultStore.isEnabled() && response.isSuccess() ? " (guardada no result store)" : "");
 			} else {
 				log.debug("Future resolvido com sucesso para chatId: {}", correlationId);
 			}
@@ -9,20 +9,44 @@ import java.util.function.Function;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 import br.com.ia.model.IaRequest;
 import br.com.ia.model.IaResponse;
 import br.com.ia.model.responses.ResponsesRequest;
 import br.com.ia.model.responses.ResponsesRequest.ResponsesRequestBuilder;
 import br.com.ia.model.responses.ResponsesResponse;
+import br.com.ia.model.responses.ShardText;
+import br.com.ia.model.responses.Usage;
+import br.com.ia.sdk.context.ShardFingerprint;
+import br.com.ia.sdk.transport.IaHeaders;
+import br.com.ia.sdk.transport.WireFormat;
+import br.com.ia.sdk.transport.claimcheck.ClaimCheckService;
+import br.com.ia.services.cancel.CancellationRegistry;
+import br.com.ia.services.cancel.RequestCancelledException;
+import br.com.ia.services.cascade.ModelCascade;
 import br.com.ia.services.client.responses.ResponsesClient;
-import br.com.ia.utils.OpenAICustoUtil;
+import br.com.ia.services.conversation.ConversationStateStore;
+import br.com.ia.services.deadline.DeadlineExceededException;
+import br.com.ia.services.deadline.EdfScheduler;
+import br.com.ia.services.fairness.TenantFairness;
+import br.com.ia.services.idempotency.IdempotencyGuard;
+import br.com.ia.services.retry.RetryTopicRouter;
+import br.com.ia.services.semantic.SemanticCache;
+import br.com.ia.services.tools.ToolCallLoop;
+import br.com.shared.exception.IAException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import lombok.RequiredArgsConstructor;
 
 @Component
@@ -35,12 +59,27 @@ public class IaProcessor {
 
     private final ResponsesClient responsesClient;
     private final ObjectMapper mapper;
+    private final ClaimCheckService claimChecks;
+    private final PromptCacheTracker cacheTracker;
+    private final ConversationStateStore conversations;
+    private final ToolCallLoop toolLoop;
+    private final ModelCascade cascade;
+    private final RetryTopicRouter retryRouter;
+    private final EdfScheduler scheduler;
+    private final TenantFairness fairness;
+    private final CancellationRegistry cancellations;
+    private final IdempotencyGuard idempotency;
+    private final SemanticCache semanticCache;
 
     @Bean
     public Function<Message<IaRequest>, Message<IaResponse>> processIa() { // NOSONAR
         return message -> {
             IaRequest req = message.getPayload();
 
+            // responde no mesmo formato do request (JSON para produtores antigos, Smile quando negociado)
+            WireFormat format = WireFormat.fromContentType(message.getHeaders().get(MessageHeaders.CONTENT_TYPE));
+            String replyContentType = format.mimeType();
+
             // ==== chatId (único identificador do fluxo) ====
             String chatId = message.getHeaders().get(CHAT_ID, String.class);
             if (chatId == null && req != null && req.getChatId() != null) {
@@ -50,9 +89,31 @@ public class IaProcessor {
                 throw new IllegalArgumentException("chatId ausente no header/payload.");
             }
 
+            // ==== ia-request-id: reentregas do mesmo request não chamam a API de novo ====
+            String requestId = IaHeaders.requestIdOf(message.getHeaders());
+            IdempotencyGuard.Claim claim = null;
+
             try {
                 if (req == null) throw new IllegalArgumentException("IaRequest nulo.");
 
+                // prazo do SDK já passou: ninguém espera mais a resposta, não chama a API
+                long deadline = IaHeaders.deadlineOf(message.getHeaders());
+                if (IaHeaders.expired(deadline)) {
+                    throw new DeadlineExceededException("arrival", "Request chegou com o prazo vencido");
+                }
+                // cancelado pelo SDK enquanto estava na fila/retry
+                long sentAt = IaHeaders.sentAtOf(message.getHeaders());
+                if (cancellations.isCancelled(chatId, sentAt)) throw cancellations.dropQueued(chatId);
+
+                // reentrega: republica a resposta já produzida (ou espera a entrega em andamento)
+                claim = idempotency.begin(requestId, deadline);
+                if (!claim.owner()) {
+                    return reply(message, chatId, claimChecks.offload(claim.response(), format), replyContentType);
+                }
+
+                // envelope de claim-check: o corpo completo está no store
+                if (req.getClaimCheck() != null) req = claimChecks.resolveRequest(req, format);
+
                 // ---- Opções vindas do ERP ----
                 Map<String, Object> opts = req.getOptions() != null ? req.getOptions() : Map.of();
 
@@ -98,22 +159,34 @@ public class IaProcessor {
                 Object textRaw = opts.get("text");
 
                 // ==== CONTEXT SHARDS -> ContentBlocks (estáveis primeiro) ====
-                List<ResponsesRequest.ContentBlock> contextBlocks = buildBlocksFromContextShards(opts);
-
-                // ==== Prompt do usuário como último bloco ====
-                contextBlocks.add(
-                    ResponsesRequest.ContentBlock.builder()
-                        .type("input_text")
-                        .text(req.getPrompt())
-                        .build()
-                );
-
-                var input = List.of(
-                    ResponsesRequest.InputItem.builder()
-                        .role("user")
-                        .content(contextBlocks)
-                        .build()
-                );
+                List<ResponsesRequest.ContentBlock> shardBlocks = buildBlocksFromContextShards(opts);
+                String moduleKey = moduleKeyOf(opts);
+
+                // ==== Modo conversa: continua a cadeia só com shards voláteis novos + prompt ====
+                boolean conversa = previousResponseId == null && conversations.enabledFor(opts);
+                var continuation = conversa ? conversations.continuation(chatId, moduleKey, shardBlocks) : null;
+                if (continuation != null) {
+                    previousResponseId = continuation.previousResponseId();
+                }
+                if (conversa || (toolsRaw != null && toolLoop.hasHandlers())) {
+                    // a resposta precisa ficar armazenada para ser continuada (conversa ou tool call)
+                    store = Boolean.TRUE;
+                }
+
+                // ==== Cache semântico: prompt parecido já respondido no mesmo escopo (sem estado/tools) ====
+                String semanticScope = null;
+                if (previousResponseId == null && !conversa && toolsRaw == null && semanticCache.enabledFor(opts)) {
+                    semanticScope = semanticCache.scopeOf(moduleKey, metadataOf(opts, "schemaVersion"),
+                            metadataOf(opts, "rulesVersion"), shardFingerprintsOf(shardBlocks),
+                            textRaw == null ? null : canonicalJson(textRaw), instructions, model);
+                    var cached = semanticCache.lookup(semanticScope, req.getPrompt(), chatId);
+                    if (cached.isPresent()) {
+                        idempotency.complete(requestId, cached.get());
+                        return reply(message, chatId, claimChecks.offload(cached.get(), format), replyContentType);
+                    }
+                }
+
+                var input = inputOf(continuation != null ? continuation.blocks() : shardBlocks, req.getPrompt());
 
                 // ==== Monta ResponsesRequest ====
                 var builder = ResponsesRequest.builder()
@@ -132,7 +205,8 @@ public class IaProcessor {
                     .topLogprobs(topLogprobs)
                     .maxToolCalls(maxToolCalls)
                     .parallelToolCalls(parallelToolCalls)
-                    .previousResponseId(previousResponseId);
+                    .previousResponseId(previousResponseId)
+                    .deadlineEpochMs(deadline > 0 ? deadline : null);
 
                 if (textRaw != null) {
                     var textOpts = mapper.convertValue(textRaw, ResponsesRequest.TextOptions.class);
@@ -188,44 +262,77 @@ public class IaProcessor {
                 obterVerbosityRaw(verbosityRaw, builder);
 
                 var responsesReq = builder.build();
+                if (continuation == null) {
+                    cacheTracker.checkPrefix(moduleKey, promptCacheKey, responsesReq);
+                }
 
-                // ---- Chama Responses API ----
-                ResponsesResponse res = responsesClient.createResponse(apiKey, responsesReq);
+                // ---- Chama Responses API (em cascata de modelos quando o módulo tiver política) ----
+                ModelCascade.Policy cascadePolicy = cascade.policyFor(moduleKey, opts);
+                long t0 = System.nanoTime();
+                ModelCascade.Outcome outcome;
+                try {
+                    outcome = call(apiKey, responsesReq, cascadePolicy, chatId, moduleKey, deadline, sentAt);
+                } catch (IAException e) {
+                    if (continuation == null || !ConversationStateStore.isChainError(e)) throw e;
+                    // cadeia expirada/recusada: reenvia completo e recomeça
+                    conversations.forget(chatId, moduleKey);
+                    responsesReq.setPreviousResponseId(null);
+                    responsesReq.setInput(inputOf(shardBlocks, req.getPrompt()));
+                    continuation = null;
+                    outcome = call(apiKey, responsesReq, cascadePolicy, chatId, moduleKey, deadline, sentAt);
+                }
+                ResponsesResponse res = outcome.response();
+                Usage usage = outcome.usage();
+                long elapsed = System.nanoTime() - t0;
 
-                // ---- Extrai saída textual (se aplicável) ----
-                String resposta = null;
-                if (res.getOutput() != null && !res.getOutput().isEmpty()
-                    && res.getOutput().get(0).getContent() != null
-                    && !res.getOutput().get(0).getContent().isEmpty()) {
-                    var first = res.getOutput().get(0).getContent().get(0);
-                    if (first != null) resposta = first.getText();
+                if (conversa) {
+                    conversations.remember(chatId, moduleKey, res.getId(), shardBlocks, continuation != null);
                 }
+
+                // ---- Saída textual: output_text de todas as mensagens (raciocínio fica de fora) ----
+                String resposta = res.getOutputText();
                 if (resposta == null) resposta = "(sem saída textual)";
 
-                // ---- Usage via body ----
-                int tokensPrompt = getInt(res.getUsage(), "input_tokens");
-                int tokensResposta = getInt(res.getUsage(), "output_tokens");
-                BigDecimal custo = OpenAICustoUtil.calcularCustoPorUsage(res.getModel(), tokensPrompt, tokensResposta);
+                // ---- Usage via body (com tokens em cache e de raciocínio), somado entre tentativas ----
+                BigDecimal custo = outcome.custo();
+                cacheTracker.record(moduleKey, usage, elapsed);
 
                 IaResponse iaResponse = IaResponse.success(
                 	    chatId,
                 	    resposta,
                 	    custo,
                 	    res.getModel(),
-                	    tokensPrompt,
-                	    tokensResposta
+                	    usage
                 	);
+                idempotency.complete(requestId, iaResponse);
+                if (semanticScope != null) semanticCache.store(semanticScope, req.getPrompt(), iaResponse);
 
                 return MessageBuilder
-                    .withPayload(iaResponse)
+                    .withPayload(claimChecks.offload(iaResponse, format))
                     .copyHeaders(message.getHeaders())
-                    .setHeader(CHAT_ID, chatId) 
+                    .setHeader(CHAT_ID, chatId)
+                    .setHeader(MessageHeaders.CONTENT_TYPE, replyContentType)
                     .build();
 
             } catch (Exception e) {
-                // === Política de retry/DLT ===
-                if (isTransient(e)) {
-                    throw new IllegalStateException("Falha transitória ao chamar/processar IA", e);
+                // sem resposta desta entrega: a próxima (retry/reentrega) pode processar
+                idempotency.release(requestId, claim);
+                if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+
+                // === Prazo vencido: descarta sem resposta (o SDK já desistiu de esperar) ===
+                DeadlineExceededException expired = causeOf(e, DeadlineExceededException.class);
+                if (expired != null) {
+                    scheduler.expired(expired.getStage());
+                    return null;
+                }
+                // === Cancelado pelo SDK: o future já foi completado lá ===
+                if (causeOf(e, RequestCancelledException.class) != null) {
+                    return null;
+                }
+
+                // === Política de retry/DLT: transitória vai para o próximo tier, sem travar a partição ===
+                if (isTransient(e) && retryRouter.schedule(message, e)) {
+                    return null; // sem resposta agora; a próxima tentativa responde
                 }
 
                 IaResponse erro = IaResponse.error(
@@ -237,11 +344,41 @@ public class IaProcessor {
                     .withPayload(erro)
                     .copyHeaders(message.getHeaders())
                     .setHeader(CHAT_ID, chatId)
+                    .setHeader(MessageHeaders.CONTENT_TYPE, replyContentType)
                     .build();
             }
         };
     }
 
+    /**
+     * Chamada + tools executadas no servidor (call -> execute -> continue), na vez do request
+     * na fila (tenant por DRR, prazo por EDF); o consumo entra na cota do tenant.
+     */
+    private ModelCascade.Outcome call(String apiKey, ResponsesRequest req, ModelCascade.Policy policy,
+            String chatId, String moduleKey, long deadline, long sentAt) throws Exception { // NOSONAR
+        ModelCascade.Attempt attempt = r -> {
+            // pode ter sido cancelado enquanto aguardava vaga (ou entre degraus da cascata)
+            if (cancellations.isCancelled(chatId, sentAt)) throw cancellations.dropQueued(chatId);
+            ResponsesResponse res = responsesClient.createResponse(apiKey, r, sentAt);
+            if (!toolLoop.handles(res)) return new ModelCascade.Step(res, res.getUsage());
+            var loop = toolLoop.run(apiKey, r, res, chatId, moduleKey, sentAt);
+            return new ModelCascade.Step(loop.response(), loop.usage());
+        };
+        String tenant = fairness.tenantOf(moduleKey, apiKey);
+        return scheduler.run(tenant, deadline, () -> {
+            var outcome = policy == null ? cascade.single(req, attempt) : cascade.run(moduleKey, policy, req, attempt);
+            fairness.charge(tenant, outcome.usage());
+            return outcome;
+        });
+    }
+
+    private static <T extends Throwable> T causeOf(Throwable t, Class<T> type) {
+        for (Throwable e = t; e != null; e = e.getCause()) {
+            if (type.isInstance(e)) return type.cast(e);
+        }
+        return null;
+    }
+
 	private void obterVerbosityRaw(Object verbosityRaw, ResponsesRequestBuilder builder) {
 		if (verbosityRaw != null) {
 		    try {
@@ -294,18 +431,11 @@ public class IaProcessor {
             boolean stable = Boolean.TRUE.equals(s.get("stable"));
             Object payload = s.get("payload");
 
-            String jsonPayload;
-            try {
-                jsonPayload = mapper.writeValueAsString(payload == null ? Map.of() : payload);
-            } catch (Exception e) {
-                jsonPayload = "{\"erro\":\"falha ao serializar shard %s\"}".formatted(type);
-            }
-
-            String header = "### CTX:%s v%d%s".formatted(type, version, stable ? " (stable)" : "");
+            // texto "header\njson" fica para o ResponsesRequestWriter escrever direto no corpo HTTP
             blocks.add(
                 ResponsesRequest.ContentBlock.builder()
                     .type("input_text")
-                    .text(header + "\n" + jsonPayload)
+                    .shard(new ShardText(type, version, stable, payload == null ? Map.of() : payload))
                     .build()
             );
         }
@@ -321,12 +451,23 @@ public class IaProcessor {
         // Percorre a cadeia de causas
         Throwable e = t;
         while (e != null) {
+            // Circuito aberto/bulkhead cheio: a API (ou o modelo) está indisponível agora
+            if (e instanceof CallNotPermittedException || e instanceof BulkheadFullException) return true;
+
             // Rede/IO/timeout comuns
             if (e instanceof java.io.IOException) return true;
             if (e instanceof java.net.ConnectException) return true;
             if (e instanceof java.net.SocketTimeoutException) return true;
             if (e instanceof java.util.concurrent.TimeoutException) return true;
 
+            // Erros HTTP do WebClient (ResponsesClient) -> 408/429/5xx são transitórios, demais 4xx não
+            if (e instanceof WebClientResponseException webEx) {
+                int code = webEx.getStatusCode().value();
+                return code == 408 || code == 429 || (code >= 500 && code < 600);
+            }
+            // Falha antes de haver resposta (conexão, DNS, reset)
+            if (e instanceof WebClientRequestException) return true;
+
             // Erros HTTP do Spring (ex.: RestTemplate) -> 429/5xx são transitórios
             if (e instanceof HttpStatusCodeException httpEx) {
                 int code = httpEx.getStatusCode().value();
@@ -362,9 +503,70 @@ public class IaProcessor {
         }
     }
 
-    private int getInt(Map<String, Object> usage, String key) {
-        if (usage == null || !usage.containsKey(key) || usage.get(key) == null) return 0;
-        return Integer.parseInt(String.valueOf(usage.get(key)));
+    /** Único item de input (role user): blocos de shard seguidos do prompt. */
+    private static List<ResponsesRequest.InputItem> inputOf(List<ResponsesRequest.ContentBlock> shardBlocks,
+            String prompt) {
+        List<ResponsesRequest.ContentBlock> content = new ArrayList<>(shardBlocks.size() + 1);
+        content.addAll(shardBlocks);
+        content.add(
+            ResponsesRequest.ContentBlock.builder()
+                .type("input_text")
+                .text(prompt)
+                .build()
+        );
+        return List.of(
+            ResponsesRequest.InputItem.builder()
+                .role("user")
+                .content(content)
+                .build()
+        );
+    }
+
+    /** Resposta para o tópico de saída com os headers do request. */
+    private static Message<IaResponse> reply(Message<IaRequest> request, String chatId, IaResponse payload,
+            String contentType) {
+        return MessageBuilder
+            .withPayload(payload)
+            .copyHeaders(request.getHeaders())
+            .setHeader(CHAT_ID, chatId)
+            .setHeader(MessageHeaders.CONTENT_TYPE, contentType)
+            .build();
+    }
+
+    /** Campo de options.metadata enviado pelo SDK, ou null. */
+    private static Object metadataOf(Map<String, Object> opts, String field) {
+        return opts.get("metadata") instanceof Map<?, ?> md ? md.get(field) : null;
+    }
+
+    /**
+     * "type:hash do payload" dos shards do request (escopo do cache semântico). Versões de shard
+     * são contadores por chat: só o conteúdo separa o contexto de um chat do de outro.
+     */
+    private List<String> shardFingerprintsOf(List<ResponsesRequest.ContentBlock> blocks)
+            throws JsonProcessingException {
+        List<String> out = new ArrayList<>(blocks.size());
+        for (var b : blocks) {
+            if (b.getShard() == null) continue;
+            String hash = ShardFingerprint.begin()
+                .field("payload", canonicalJson(b.getShard().payload()))
+                .field("type", b.getShard().type())
+                .hex();
+            out.add(b.getShard().type() + ":" + hash);
+        }
+        return out;
+    }
+
+    /** JSON com chaves ordenadas (mesmo conteúdo, mesmo texto). */
+    private String canonicalJson(Object value) throws JsonProcessingException {
+        return mapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS).writeValueAsString(value);
+    }
+
+    /** moduleKey enviado pelo SDK em options.metadata ("generic" quando ausente). */
+    private static String moduleKeyOf(Map<String, Object> opts) {
+        if (opts.get("metadata") instanceof Map<?, ?> md && md.get("moduleKey") != null) {
+            return String.valueOf(md.get("moduleKey"));
+        }
+        return "generic";
     }
 
     private static int parseIntSafe(Object v) {
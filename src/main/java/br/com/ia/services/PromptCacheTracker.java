@@ -0,0 +1,122 @@
+package br.com.ia.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import br.com.ia.model.responses.ResponsesRequest;
+import br.com.ia.model.responses.ShardText;
+import br.com.ia.model.responses.Usage;
+import br.com.ia.services.client.responses.ResponsesRequestWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Eficácia do prompt cache por {@code moduleKey}.
+ * <p>
+ * Métricas (tag {@code moduleKey}):
+ * <ul>
+ * <li>{@code ia.prompt.tokens.input} / {@code ia.prompt.tokens.cached}: contadores de tokens de
+ * entrada e da parte servida pelo cache (hit ratio = cached / input);</li>
+ * <li>{@code ia.prompt.cache.hit.ratio}: distribuição do hit ratio por chamada;</li>
+ * <li>{@code ia.responses.latency}: latência da chamada, com tag {@code cache=hit|miss};</li>
+ * <li>{@code ia.prompt.prefix.changed}: chamadas cujo prefixo estável mudou em relação à
+ * anterior com o mesmo {@code prompt_cache_key}.</li>
+ * </ul>
+ * O prefixo estável é o que o cache pode reaproveitar: modelo, instructions, tools e os bytes
+ * exatos dos shards estáveis (os mesmos que o {@link ResponsesRequestWriter} escreve no corpo),
+ * resumidos em um CRC32C por chamada.
+ * </p>
+ */
+@Slf4j
+@Component
+public class PromptCacheTracker {
+
+	private static final String MODULE_KEY = "moduleKey";
+
+	private final MeterRegistry registry;
+	private final ResponsesRequestWriter writer;
+
+	/** Último prefixo visto por prompt_cache_key. */
+	private final Map<String, Long> lastPrefix = new ConcurrentHashMap<>();
+
+	@Value("${erp.ia.prompt-cache.tracked-keys:10000}")
+	private int trackedKeys;
+
+	public PromptCacheTracker(ObjectProvider<MeterRegistry> registry, ResponsesRequestWriter writer) {
+		this.registry = registry.getIfAvailable(() -> Metrics.globalRegistry);
+		this.writer = writer;
+	}
+
+	/**
+	 * Calcula o hash do prefixo estável e compara com a chamada anterior da mesma chave.
+	 *
+	 * @return true se o prefixo mudou (a chamada não deve aproveitar o cache)
+	 */
+	public boolean checkPrefix(String moduleKey, String promptCacheKey, ResponsesRequest req) {
+		if (promptCacheKey == null)
+			return false;
+
+		long prefix = prefixHash(req);
+		if (lastPrefix.size() >= trackedKeys)
+			lastPrefix.clear();
+		Long prev = lastPrefix.put(promptCacheKey, prefix);
+		if (prev == null || prev == prefix)
+			return false;
+
+		Counter.builder("ia.prompt.prefix.changed").tag(MODULE_KEY, moduleKey).register(registry).increment();
+		log.info("Prefixo estável mudou para prompt_cache_key={} (moduleKey={}): {} -> {}", promptCacheKey, moduleKey,
+				Long.toHexString(prev), Long.toHexString(prefix));
+		return true;
+	}
+
+	/** Registra uso e latência de uma chamada concluída. */
+	public void record(String moduleKey, Usage usage, long elapsedNanos) {
+		Counter.builder("ia.prompt.tokens.input").tag(MODULE_KEY, moduleKey).register(registry)
+				.increment(usage.inputTokens());
+		Counter.builder("ia.prompt.tokens.cached").tag(MODULE_KEY, moduleKey).register(registry)
+				.increment(usage.cachedTokens());
+		DistributionSummary.builder("ia.prompt.cache.hit.ratio").tag(MODULE_KEY, moduleKey).register(registry)
+				.record(usage.cacheHitRatio());
+		Timer.builder("ia.responses.latency").tag(MODULE_KEY, moduleKey)
+				.tag("cache", usage.cachedTokens() > 0 ? "hit" : "miss").register(registry)
+				.record(elapsedNanos, TimeUnit.NANOSECONDS);
+	}
+
+	private long prefixHash(ResponsesRequest req) {
+		CRC32C crc = new CRC32C();
+		update(crc, req.getModel());
+		update(crc, req.getInstructions());
+		if (req.getTools() != null)
+			update(crc, req.getTools().toString());
+		if (req.getInput() != null) {
+			for (var item : req.getInput()) {
+				if (item.getContent() == null)
+					continue;
+				for (var block : item.getContent()) {
+					ShardText shard = block.getShard();
+					if (shard == null || !shard.stable())
+						continue; // estáveis vêm primeiro; o resto do input é volátil
+					crc.update(writer.fragment(shard));
+				}
+			}
+		}
+		return crc.getValue();
+	}
+
+	private static void update(CRC32C crc, String s) {
+		if (s != null)
+			crc.update(s.getBytes(StandardCharsets.UTF_8));
+		crc.update(0);
+	}
+}
@@ -0,0 +1,119 @@
+package br.com.ia.services.cancel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import br.com.ia.sdk.transport.IaHeaders;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cancelamentos recebidos em {@code ia.control} (publicados por {@code PromptExecutor.cancel}).
+ * <p>
+ * Cada instância do processor consome o tópico com um group próprio, então todas veem todos
+ * os cancelamentos. Um cancelamento:
+ * <ul>
+ * <li>marca o chatId até {@code erp.ia.cancel.ttl-ms}: requests desse chatId enviados antes do
+ * cancelamento ({@link IaHeaders#SENT_AT}) e ainda na fila, em retry ou aguardando vaga são
+ * descartados antes da chamada à API;</li>
+ * <li>dispara os handles das chamadas em andamento do chatId ({@link #register}), que
+ * cancelam a assinatura do WebClient (e com ela a conexão HTTP/stream).</li>
+ * </ul>
+ * Métrica: {@code ia.cancel} com tag {@code stage=queued|inflight}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class CancellationRegistry {
+
+	private final MeterRegistry registry;
+
+	/** chatId -> instante do último cancelamento (epoch ms). */
+	private final Map<String, Long> cancelledAt = new ConcurrentHashMap<>();
+	/** chatId -> ações que cancelam as chamadas em andamento. */
+	private final Map<String, List<Runnable>> inFlight = new ConcurrentHashMap<>();
+
+	@Value("${erp.ia.cancel.ttl-ms:600000}")
+	private long ttlMs;
+
+	public CancellationRegistry(ObjectProvider<MeterRegistry> registry) {
+		this.registry = registry.getIfAvailable(() -> Metrics.globalRegistry);
+	}
+
+	@KafkaListener(topics = "${erp.ia.control.topic:ia.control}", groupId = "ia-control-${random.uuid}",
+			containerFactory = "controlListenerContainerFactory")
+	public void onControl(Message<byte[]> message) {
+		if (!IaHeaders.CANCEL.equals(String.valueOf(message.getHeaders().get(IaHeaders.CONTROL)).replace("\"", "")))
+			return;
+		String chatId = new String(message.getPayload(), StandardCharsets.UTF_8);
+		long at = IaHeaders.longOf(message.getHeaders().get(IaHeaders.CANCEL_AT));
+		cancel(chatId, at > 0 ? at : System.currentTimeMillis());
+	}
+
+	/** Marca o chatId como cancelado em {@code at} e interrompe as chamadas em andamento. */
+	public void cancel(String chatId, long at) {
+		cancelledAt.merge(chatId, at, Math::max);
+		purgeExpired();
+
+		List<Runnable> handles = inFlight.remove(chatId);
+		if (handles != null) {
+			handles.forEach(Runnable::run);
+			Counter.builder("ia.cancel").tag("stage", "inflight").register(registry).increment();
+			log.info("Chamada em andamento cancelada para chatId {}", chatId);
+		}
+	}
+
+	/**
+	 * true se houve cancelamento do chatId depois do envio do request.
+	 *
+	 * @param sentAt {@link IaHeaders#SENT_AT} do request (0 se o produtor não informou)
+	 */
+	public boolean isCancelled(String chatId, long sentAt) {
+		Long at = cancelledAt.get(chatId);
+		if (at == null)
+			return false;
+		if (System.currentTimeMillis() - at > ttlMs) {
+			cancelledAt.remove(chatId, at);
+			return false;
+		}
+		return sentAt <= 0 || sentAt <= at;
+	}
+
+	/** Descarta um request cancelado antes de chamar a API. */
+	public RequestCancelledException dropQueued(String chatId) {
+		Counter.builder("ia.cancel").tag("stage", "queued").register(registry).increment();
+		return new RequestCancelledException("Request cancelado antes da chamada: chatId " + chatId);
+	}
+
+	/**
+	 * Registra a ação que cancela uma chamada em andamento do chatId.
+	 *
+	 * @return ação que remove o registro (chamar ao fim da chamada)
+	 */
+	public Runnable register(String chatId, Runnable onCancel) {
+		if (chatId == null)
+			return () -> {
+			};
+		inFlight.computeIfAbsent(chatId, k -> new CopyOnWriteArrayList<>()).add(onCancel);
+		return () -> inFlight.computeIfPresent(chatId, (k, list) -> {
+			list.remove(onCancel);
+			return list.isEmpty() ? null : list;
+		});
+	}
+
+	private void purgeExpired() {
+		long limit = System.currentTimeMillis() - ttlMs;
+		cancelledAt.values().removeIf(at -> at < limit);
+	}
+}
@@ -0,0 +1,14 @@
+package br.com.ia.services.cancel;
+
+/**
+ * O request foi cancelado pelo SDK ({@code PromptExecutor.cancel}). Não é transitória e não
+ * gera resposta: o future pendente já foi completado como cancelado do lado do SDK.
+ */
+public class RequestCancelledException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public RequestCancelledException(String message) {
+		super(message, null, false, false);
+	}
+}
@@ -0,0 +1,221 @@
+package br.com.ia.services.cascade;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.ia.model.responses.ResponsesRequest;
+import br.com.ia.model.responses.ResponsesResponse;
+import br.com.ia.model.responses.Usage;
+import br.com.ia.utils.OpenAICustoUtil;
+import br.com.shared.exception.IAException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cascata de modelos por {@code moduleKey}: tenta o modelo mais barato primeiro, valida a
+ * saída (JSON schema do {@code text.response_format} e, se configurada, a regra de confiança)
+ * e só escala para o próximo quando a validação reprova. O último modelo da lista é aceito
+ * como está, igual ao fluxo sem cascata.
+ * <p>
+ * Erros da chamada não escalam: seguem para a política de retry/DLT do processor (uma API
+ * fora do ar derrubaria todos os modelos da cascata do mesmo jeito). Tokens e custo de todas
+ * as tentativas são somados na resposta.
+ * </p>
+ * Métricas (tag {@code moduleKey}): {@code ia.cascade.attempts} e {@code ia.cascade.served}
+ * (tag {@code model}), {@code ia.cascade.escalations} (tags {@code from} e {@code reason}) e
+ * {@code ia.cascade.exhausted}. Taxa de escalação de um degrau = escalations / attempts.
+ */
+@Slf4j
+@Component
+public class ModelCascade {
+
+	private static final String MODULE_KEY = "moduleKey";
+
+	/** Uma tentativa da cascata: chamada + eventual loop de tools, com o usage acumulado. */
+	@FunctionalInterface
+	public interface Attempt {
+		Step call(ResponsesRequest req) throws IAException;
+	}
+
+	public record Step(ResponsesResponse response, Usage usage) {
+	}
+
+	/** Resultado final: resposta aceita, usage/custo somados e quantas escaladas houve. */
+	public record Outcome(ResponsesResponse response, Usage usage, BigDecimal custo, int escalations) {
+	}
+
+	/** Modelos em ordem crescente de custo e regra de confiança opcional (campo >= mínimo). */
+	public record Policy(List<String> models, String confidenceField, double minConfidence) {
+
+		boolean hasConfidenceRule() {
+			return confidenceField != null;
+		}
+	}
+
+	private final MeterRegistry registry;
+	private final ObjectMapper mapper;
+
+	@Value("${erp.ia.cascade.enabled:true}")
+	private boolean enabled;
+
+	/** "moduleKey=modelo>modelo>modelo" em CSV, ex.: "classificacao=gpt-5-nano>gpt-5-mini>gpt-5". */
+	@Value("${erp.ia.cascade.models:}")
+	private String modelsCsv;
+
+	/** "moduleKey=campo>=mínimo" em CSV, ex.: "classificacao=confianca>=0.8". */
+	@Value("${erp.ia.cascade.confidence:}")
+	private String confidenceCsv;
+
+	private volatile Map<String, Policy> policies;
+
+	public ModelCascade(ObjectProvider<MeterRegistry> registry, ObjectMapper mapper) {
+		this.registry = registry.getIfAvailable(() -> Metrics.globalRegistry);
+		this.mapper = mapper;
+	}
+
+	/**
+	 * Política do módulo, ou null se não houver cascata (desligada, não configurada ou
+	 * {@code options.cascade=false} no request).
+	 */
+	public Policy policyFor(String moduleKey, Map<String, Object> opts) {
+		if (!enabled || moduleKey == null)
+			return null;
+		Object flag = opts.get("cascade");
+		if (flag != null && !Boolean.parseBoolean(String.valueOf(flag)))
+			return null;
+		return policies().get(moduleKey);
+	}
+
+	/** Sem cascata: uma tentativa, custo calculado no modelo que respondeu. */
+	public Outcome single(ResponsesRequest req, Attempt attempt) throws IAException {
+		Step step = attempt.call(req);
+		return new Outcome(step.response(), step.usage(),
+				OpenAICustoUtil.calcularCustoPorUsage(step.response().getModel(), step.usage()), 0);
+	}
+
+	public Outcome run(String moduleKey, Policy policy, ResponsesRequest req, Attempt attempt) throws IAException {
+		Map<String, Object> schema = schemaOf(req);
+		List<String> models = policy.models();
+
+		Usage total = Usage.EMPTY;
+		BigDecimal custo = BigDecimal.ZERO;
+		for (int i = 0;; i++) {
+			String model = models.get(i);
+			ResponsesRequest r = model.equals(req.getModel()) ? req : req.toBuilder().model(model).build();
+			count("ia.cascade.attempts", moduleKey, "model", model);
+
+			Step step = attempt.call(r);
+			total = total.plus(step.usage());
+			custo = custo.add(OpenAICustoUtil.calcularCustoPorUsage(step.response().getModel(), step.usage()));
+
+			boolean last = i == models.size() - 1;
+			String reason = reject(step.response(), schema, policy);
+			if (reason == null || last) {
+				if (reason != null) {
+					count("ia.cascade.exhausted", moduleKey, "reason", reason);
+				}
+				count("ia.cascade.served", moduleKey, "model", model);
+				return new Outcome(step.response(), total, custo, i);
+			}
+
+			Counter.builder("ia.cascade.escalations").tag(MODULE_KEY, moduleKey).tag("from", model)
+					.tag("reason", reason).register(registry).increment();
+			log.debug("Cascata {}: {} reprovado ({}), escalando para {}", moduleKey, model, reason, models.get(i + 1));
+		}
+	}
+
+	/** @return motivo da reprovação (tag de métrica) ou null se a saída foi aceita. */
+	private String reject(ResponsesResponse res, Map<String, Object> schema, Policy policy) {
+		if ("incomplete".equals(res.getStatus()))
+			return "incomplete";
+		String text = res.getOutputText();
+		if (text == null || text.isBlank())
+			return "empty";
+		if (schema == null && !policy.hasConfidenceRule())
+			return null;
+
+		JsonNode node;
+		try {
+			node = mapper.readTree(text);
+		} catch (JsonProcessingException e) {
+			return "json";
+		}
+		if (schema != null) {
+			String violation = SchemaValidator.validate(node, schema);
+			if (violation != null) {
+				log.debug("Saída fora do schema: {}", violation);
+				return "schema";
+			}
+		}
+		if (policy.hasConfidenceRule()) {
+			JsonNode c = node.at("/" + policy.confidenceField().replace('.', '/'));
+			if (!c.isNumber() || c.doubleValue() < policy.minConfidence())
+				return "confidence";
+		}
+		return null;
+	}
+
+	private static Map<String, Object> schemaOf(ResponsesRequest req) {
+		var text = req.getText();
+		if (text == null || text.getResponseFormat() == null || text.getResponseFormat().getJsonSchema() == null)
+			return null;
+		return text.getResponseFormat().getJsonSchema().getSchema();
+	}
+
+	private void count(String name, String moduleKey, String tag, String value) {
+		Counter.builder(name).tag(MODULE_KEY, moduleKey).tag(tag, value).register(registry).increment();
+	}
+
+	private Map<String, Policy> policies() {
+		Map<String, Policy> p = policies;
+		if (p == null) {
+			Map<String, String[]> confidence = new HashMap<>();
+			for (String[] kv : pairs(confidenceCsv)) {
+				int op = kv[1].indexOf(">=");
+				if (op > 0)
+					confidence.put(kv[0], new String[] { kv[1].substring(0, op).trim(), kv[1].substring(op + 2).trim() });
+			}
+
+			Map<String, Policy> m = new HashMap<>();
+			for (String[] kv : pairs(modelsCsv)) {
+				List<String> models = new ArrayList<>();
+				for (String model : kv[1].split(">")) {
+					if (!model.isBlank())
+						models.add(model.trim());
+				}
+				if (models.isEmpty())
+					continue;
+				String[] rule = confidence.get(kv[0]);
+				m.put(kv[0], rule == null ? new Policy(List.copyOf(models), null, 0)
+						: new Policy(List.copyOf(models), rule[0], Double.parseDouble(rule[1])));
+			}
+			policies = p = Map.copyOf(m);
+		}
+		return p;
+	}
+
+	private static List<String[]> pairs(String csv) {
+		List<String[]> out = new ArrayList<>();
+		if (csv == null)
+			return out;
+		for (String pair : csv.split(",")) {
+			int i = pair.indexOf('=');
+			if (i > 0)
+				out.add(new String[] { pair.substring(0, i).trim(), pair.substring(i + 1).trim() });
+		}
+		return out;
+	}
+}
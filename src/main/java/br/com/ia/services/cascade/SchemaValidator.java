@@ -0,0 +1,142 @@
+package br.com.ia.services.cascade;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Validação enxuta de JSON Schema para a saída estruturada do modelo. Cobre o subconjunto
+ * aceito pelo structured outputs: {@code type} (inclusive lista), {@code properties},
+ * {@code required}, {@code additionalProperties: false}, {@code items}, {@code enum},
+ * {@code const}, {@code anyOf}, limites numéricos, de tamanho de string e de itens. Palavras
+ * desconhecidas são ignoradas (o schema nunca reprova por algo que não entende).
+ */
+final class SchemaValidator {
+
+	private SchemaValidator() {
+	}
+
+	/** @return null se válido, senão o caminho/motivo da primeira violação. */
+	static String validate(JsonNode node, Map<String, Object> schema) {
+		return check(node, schema, "$");
+	}
+
+	@SuppressWarnings("unchecked")
+	private static String check(JsonNode node, Map<String, Object> schema, String path) { // NOSONAR
+		if (schema == null || schema.isEmpty())
+			return null;
+
+		Object type = schema.get("type");
+		if (type != null && !typeMatches(node, type))
+			return path + ": tipo esperado " + type;
+
+		Object en = schema.get("enum");
+		if (en instanceof List<?> values && values.stream().noneMatch(v -> sameValue(node, v)))
+			return path + ": fora do enum";
+
+		if (schema.containsKey("const") && !sameValue(node, schema.get("const")))
+			return path + ": diferente de const";
+
+		if (schema.get("anyOf") instanceof List<?> options) {
+			boolean any = options.stream()
+					.anyMatch(o -> o instanceof Map<?, ?> m && check(node, (Map<String, Object>) m, path) == null);
+			if (!any)
+				return path + ": nenhuma opção de anyOf";
+		}
+
+		if (node.isObject()) {
+			String err = checkObject(node, schema, path);
+			if (err != null)
+				return err;
+		} else if (node.isArray()) {
+			String err = checkArray(node, schema, path);
+			if (err != null)
+				return err;
+		} else if (node.isTextual()) {
+			int len = node.textValue().codePointCount(0, node.textValue().length());
+			if (len < intOf(schema.get("minLength"), 0) || len > intOf(schema.get("maxLength"), Integer.MAX_VALUE))
+				return path + ": tamanho fora do limite";
+		} else if (node.isNumber()) {
+			double v = node.doubleValue();
+			if (schema.get("minimum") instanceof Number min && v < min.doubleValue())
+				return path + ": abaixo de minimum";
+			if (schema.get("maximum") instanceof Number max && v > max.doubleValue())
+				return path + ": acima de maximum";
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static String checkObject(JsonNode node, Map<String, Object> schema, String path) {
+		Map<String, Object> props = schema.get("properties") instanceof Map<?, ?> p ? (Map<String, Object>) p : Map.of();
+
+		if (schema.get("required") instanceof List<?> required) {
+			for (Object r : required) {
+				if (!node.has(String.valueOf(r)))
+					return path + "." + r + ": obrigatório";
+			}
+		}
+
+		boolean closed = Boolean.FALSE.equals(schema.get("additionalProperties"));
+		for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext();) {
+			var field = it.next();
+			Object sub = props.get(field.getKey());
+			if (sub instanceof Map<?, ?> m) {
+				String err = check(field.getValue(), (Map<String, Object>) m, path + "." + field.getKey());
+				if (err != null)
+					return err;
+			} else if (closed) {
+				return path + "." + field.getKey() + ": propriedade não prevista";
+			}
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static String checkArray(JsonNode node, Map<String, Object> schema, String path) {
+		int size = node.size();
+		if (size < intOf(schema.get("minItems"), 0) || size > intOf(schema.get("maxItems"), Integer.MAX_VALUE))
+			return path + ": quantidade de itens fora do limite";
+
+		if (schema.get("items") instanceof Map<?, ?> items) {
+			for (int i = 0; i < size; i++) {
+				String err = check(node.get(i), (Map<String, Object>) items, path + "[" + i + "]");
+				if (err != null)
+					return err;
+			}
+		}
+		return null;
+	}
+
+	private static boolean typeMatches(JsonNode node, Object type) {
+		if (type instanceof List<?> types)
+			return types.stream().anyMatch(t -> typeMatches(node, t));
+		return switch (String.valueOf(type)) {
+		case "object" -> node.isObject();
+		case "array" -> node.isArray();
+		case "string" -> node.isTextual();
+		case "integer" -> node.isIntegralNumber() || (node.isNumber() && node.doubleValue() == Math.rint(node.doubleValue()));
+		case "number" -> node.isNumber();
+		case "boolean" -> node.isBoolean();
+		case "null" -> node.isNull();
+		default -> true;
+		};
+	}
+
+	private static boolean sameValue(JsonNode node, Object value) {
+		if (value == null)
+			return node.isNull();
+		if (value instanceof Number n)
+			return node.isNumber() && node.decimalValue().compareTo(new BigDecimal(n.toString())) == 0;
+		if (value instanceof Boolean b)
+			return node.isBoolean() && node.booleanValue() == b;
+		return node.isTextual() && node.textValue().equals(String.valueOf(value));
+	}
+
+	private static int intOf(Object v, int def) {
+		return v instanceof Number n ? n.intValue() : def;
+	}
+}
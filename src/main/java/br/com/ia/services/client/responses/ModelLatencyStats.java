@@ -0,0 +1,69 @@
+package br.com.ia.services.client.responses;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latências recentes por modelo (janela circular de tamanho fixo) e percentil calculado sob
+ * demanda, recalculado no máximo a cada {@code window / 8} amostras.
+ */
+final class ModelLatencyStats {
+
+	private final int window;
+	private final int minSamples;
+	private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+	ModelLatencyStats(int window, int minSamples) {
+		this.window = Math.max(16, window);
+		this.minSamples = Math.max(1, minSamples);
+	}
+
+	void record(String model, long millis) {
+		rings.computeIfAbsent(model, m -> new Ring(window)).add(millis);
+	}
+
+	/** Percentil {@code q} (0..1) em ms, ou -1 enquanto não houver amostras suficientes. */
+	long percentile(String model, double q) {
+		Ring r = rings.get(model);
+		return r == null ? -1 : r.percentile(q, minSamples);
+	}
+
+	private static final class Ring {
+
+		private final long[] values;
+		private final int refreshEvery;
+		private int next;
+		private int size;
+		private int sinceRefresh;
+		private double cachedQ = -1;
+		private long cached = -1;
+
+		Ring(int window) {
+			this.values = new long[window];
+			this.refreshEvery = Math.max(1, window / 8);
+		}
+
+		synchronized void add(long v) {
+			values[next] = v;
+			next = (next + 1) % values.length;
+			if (size < values.length)
+				size++;
+			sinceRefresh++;
+		}
+
+		synchronized long percentile(double q, int minSamples) {
+			if (size < minSamples)
+				return -1;
+			if (cached >= 0 && cachedQ == q && sinceRefresh < refreshEvery)
+				return cached;
+			long[] copy = Arrays.copyOf(values, size);
+			Arrays.sort(copy);
+			int idx = (int) Math.min(size - 1L, Math.max(0, Math.round(Math.ceil(q * size)) - 1));
+			cached = copy[idx];
+			cachedQ = q;
+			sinceRefresh = 0;
+			return cached;
+		}
+	}
+}
@@ -2,45 +2,270 @@ package br.com.ia.services.client.responses;
 
 import br.com.ia.model.responses.ResponsesRequest;
 import br.com.ia.model.responses.ResponsesResponse;
+import br.com.ia.services.cancel.CancellationRegistry;
+import br.com.ia.services.cancel.RequestCancelledException;
+import br.com.ia.services.deadline.DeadlineExceededException;
 import br.com.shared.exception.IAException;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class ResponsesClient {
 
-  private static final String BASE_URL = "https://api.openai.com/v1";
-
   private final WebClient.Builder builder;
+  private final ResponsesRequestWriter requestWriter;
+  private final ResponsesResponseParser responseParser;
+  private final ResponsesResilience resilience;
+  private final CancellationRegistry cancellations;
+
+  /** Base da Responses API (sobrescrita em testes de carga/stubs locais). */
+  @Value("${erp.ia.responses.base-url:https://api.openai.com/v1}")
+  private String baseUrl;
+
+  private volatile WebClient webClient;
+
+  // ===== Hedging (opt-in) =====
+  private static final long HEDGE_WINDOW = 10_000;
+
+  @Value("${erp.ia.hedge.enabled:false}")
+  private boolean hedgeEnabled;
+
+  /** Percentil da latência do modelo a partir do qual o hedge é disparado. */
+  @Value("${erp.ia.hedge.percentile:0.95}")
+  private double hedgePercentile;
 
-  private WebClient client(String apiKey) {
-    return builder
-        .baseUrl(BASE_URL)
-        .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
-        .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-        .build();
+  @Value("${erp.ia.hedge.min-delay-ms:500}")
+  private long hedgeMinDelayMs;
+
+  /** Máximo de hedges em % das chamadas (limita o gasto extra). */
+  @Value("${erp.ia.hedge.budget-percent:5}")
+  private double hedgeBudgetPercent;
+
+  @Value("${erp.ia.hedge.fallback-models:}")
+  private String hedgeFallbackCsv;
+
+  private final ModelLatencyStats latencies;
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder hedges = new LongAdder();
+  private volatile Map<String, String> fallbacks;
+
+  public ResponsesClient(WebClient.Builder builder, ResponsesRequestWriter requestWriter,
+      ResponsesResponseParser responseParser, ResponsesResilience resilience,
+      CancellationRegistry cancellations,
+      @Value("${erp.ia.hedge.window:256}") int latencyWindow,
+      @Value("${erp.ia.hedge.min-samples:50}") int latencyMinSamples) {
+    this.builder = builder;
+    this.requestWriter = requestWriter;
+    this.responseParser = responseParser;
+    this.resilience = resilience;
+    this.cancellations = cancellations;
+    this.latencies = new ModelLatencyStats(latencyWindow, latencyMinSamples);
   }
 
-  /** Chamada síncrona (sem streaming) */
+  /**
+   * Cliente único (o builder compartilhado é clonado; antes cada chamada acumulava headers
+   * Authorization nele). A api key vai por request.
+   */
+  private WebClient client() {
+    WebClient c = webClient;
+    if (c == null) {
+      synchronized (this) {
+        c = webClient;
+        if (c == null) {
+          c = builder.clone()
+              .baseUrl(baseUrl)
+              .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+              .build();
+          webClient = c;
+        }
+      }
+    }
+    return c;
+  }
+
+  private WebClient.RequestHeadersSpec<?> post(String apiKey, ResponsesRequest req) {
+    return client()
+        .post()
+        .uri("/responses")
+        .headers(h -> h.setBearerAuth(apiKey))
+        .body(requestWriter.inserter(req));
+  }
+
+  /**
+   * Chamada síncrona (sem streaming). Fica registrada no {@link CancellationRegistry} pelo
+   * chatId do metadata: um cancelamento descarta a assinatura (e a conexão HTTP).
+   */
   public ResponsesResponse createResponse(String apiKey, ResponsesRequest req) throws IAException {
+    return createResponse(apiKey, req, System.currentTimeMillis());
+  }
+
+  /**
+   * Como {@link #createResponse(String, ResponsesRequest)}; cancelamento do chatId posterior a
+   * {@code sentAt} que chegue antes do registro da chamada também a interrompe.
+   *
+   * @param sentAt envio do request ({@code IaHeaders.SENT_AT}), ou o início da chamada
+   */
+  public ResponsesResponse createResponse(String apiKey, ResponsesRequest req, long sentAt) throws IAException {
+    Runnable unregister = null;
     try {
       if (req.getModel() == null) req.setModel("gpt-5");
-      return client(apiKey)
-          .post()
-          .uri("/responses")
-          .bodyValue(req)
-          .retrieve()
-          .bodyToMono(ResponsesResponse.class)
-          .block();
+      resilience.awaitPermission(req.getModel(), req.getDeadlineEpochMs());
+      Mono<ResponsesResponse> call = hedgeEnabled ? hedged(apiKey, req) : single(apiKey, req);
+      CompletableFuture<ResponsesResponse> f = withDeadline(req, call).toFuture();
+      unregister = cancellations.register(chatIdOf(req), () -> f.cancel(true));
+      // cancelamento que chegou entre a checagem do processor e o registro acima
+      if (cancellations.isCancelled(chatIdOf(req), sentAt)) f.cancel(true);
+      return f.get();
+    } catch (CancellationException e) {
+      throw new RequestCancelledException("Chamada cancelada: chatId " + chatIdOf(req));
+    } catch (DeadlineExceededException e) {
+      throw e;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause() != null ? e.getCause() : e;
+      if (cause instanceof DeadlineExceededException d) throw d;
+      throw new IAException("Falha ao chamar Responses API: " + cause.getMessage(), cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IAException("Thread interrompida durante a chamada à Responses API", e);
     } catch (Exception e) {
       throw new IAException("Falha ao chamar Responses API: " + e.getMessage(), e);
+    } finally {
+      if (unregister != null) unregister.run();
+    }
+  }
+
+  private static String chatIdOf(ResponsesRequest req) {
+    return req.getMetadata() != null ? req.getMetadata().get("chatId") : null;
+  }
+
+  /** Corta a chamada (e cancela o request HTTP) quando o prazo do request Kafka acabar. */
+  private Mono<ResponsesResponse> withDeadline(ResponsesRequest req, Mono<ResponsesResponse> call) {
+    Long deadline = req.getDeadlineEpochMs();
+    if (deadline == null) return call;
+    long remaining = deadline - System.currentTimeMillis();
+    DeadlineExceededException expired = new DeadlineExceededException("upstream", "Prazo do request venceu durante a chamada");
+    if (remaining <= 0) return Mono.error(expired);
+    return call.timeout(Duration.ofMillis(remaining), Mono.error(expired));
+  }
+
+  /**
+   * Uma chamada, sob circuit breaker/bulkhead/time limiter do modelo; a latência das
+   * bem-sucedidas alimenta o p95 do modelo. Chamada cancelada (primária vencida pelo hedge,
+   * prazo, cancelamento) entra com o tempo até o cancelamento, um limite inferior: sem ela o
+   * percentil só veria as rápidas e o hedge dispararia cada vez mais cedo.
+   */
+  private Mono<ResponsesResponse> single(String apiKey, ResponsesRequest req) {
+    return resilience.decorate(req.getModel(), Mono.defer(() -> {
+      long t0 = System.nanoTime();
+      // junta os buffers do corpo (composite, sem cópia no Netty) e lê em streaming
+      return post(apiKey, req)
+          .retrieve()
+          .bodyToFlux(DataBuffer.class)
+          .as(DataBufferUtils::join)
+          .map(this::parse)
+          .doOnSuccess(r -> latencies.record(req.getModel(),
+              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0)))
+          .doOnCancel(() -> latencies.record(req.getModel(),
+              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0)));
+    }));
+  }
+
+  /**
+   * Hedging: se a chamada passar do percentil observado do modelo, dispara uma segunda
+   * (mesmo request ou no modelo de fallback configurado). A primeira resposta vence e a
+   * outra é cancelada. Sem amostras suficientes, sem orçamento ou se a primária falhar antes
+   * do prazo, não há hedge.
+   */
+  private Mono<ResponsesResponse> hedged(String apiKey, ResponsesRequest req) {
+    calls.increment();
+    long p = latencies.percentile(req.getModel(), hedgePercentile);
+    if (p < 0) return single(apiKey, req);
+    Duration delay = Duration.ofMillis(Math.max(hedgeMinDelayMs, p));
+
+    AtomicReference<Throwable> primaryError = new AtomicReference<>();
+    Sinks.Empty<Void> primaryFailed = Sinks.empty();
+    Mono<ResponsesResponse> primary = single(apiKey, req)
+        .doOnError(e -> {
+          primaryError.set(e);
+          primaryFailed.tryEmitEmpty();
+        });
+
+    Mono<ResponsesResponse> hedge = Mono.delay(delay)
+        .takeUntilOther(primaryFailed.asMono())
+        .filter(x -> acquireHedgeBudget())
+        .flatMap(x -> {
+          ResponsesRequest h = hedgeRequest(req);
+          log.debug("Hedge disparado após {} ms (modelo {} -> {})", delay.toMillis(), req.getModel(), h.getModel());
+          return single(apiKey, h);
+        });
+
+    return Mono.firstWithValue(primary, hedge)
+        .onErrorMap(e -> primaryError.get() != null ? primaryError.get() : e);
+  }
+
+  private boolean acquireHedgeBudget() {
+    long total = calls.sum();
+    if (hedges.sum() + 1 > total * hedgeBudgetPercent / 100.0) return false;
+    hedges.increment();
+    if (total > HEDGE_WINDOW) { // janela aproximada: zera os dois contadores juntos
+      calls.reset();
+      hedges.reset();
+    }
+    return true;
+  }
+
+  private ResponsesRequest hedgeRequest(ResponsesRequest req) {
+    String fallback = hedgeFallbacks().get(req.getModel());
+    return fallback == null ? req : req.toBuilder().model(fallback).build();
+  }
+
+  /** "modelo=fallback" em CSV, ex.: "gpt-5=gpt-5-mini,gpt-5-mini=gpt-5-nano". */
+  private Map<String, String> hedgeFallbacks() {
+    Map<String, String> m = fallbacks;
+    if (m == null) {
+      m = new HashMap<>();
+      if (hedgeFallbackCsv != null) {
+        for (String pair : hedgeFallbackCsv.split(",")) {
+          int i = pair.indexOf('=');
+          if (i > 0) m.put(pair.substring(0, i).trim(), pair.substring(i + 1).trim());
+        }
+      }
+      fallbacks = m = Map.copyOf(m);
+    }
+    return m;
+  }
+
+  private ResponsesResponse parse(DataBuffer body) {
+    try (InputStream in = body.asInputStream(true)) {
+      return responseParser.parse(in);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Falha ao ler resposta da Responses API", e);
     }
   }
 
@@ -48,17 +273,17 @@ public class ResponsesClient {
   public Flux<String> streamResponse(String apiKey, ResponsesRequest req) {
     if (req.getModel() == null) req.setModel("gpt-5");
     req.setStream(true);
-    return client(apiKey)
-        .post()
-        .uri("/responses")
+    return post(apiKey, req)
         .accept(MediaType.TEXT_EVENT_STREAM)
-        .bodyValue(req)
         .retrieve()
         .bodyToFlux(String.class);
   }
 
-  /** Helper para consumir streaming de forma simples */
-  public void streamResponse(String apiKey, ResponsesRequest req, Consumer<String> onEvent) {
-    streamResponse(apiKey, req).subscribe(onEvent);
+  /** Helper para consumir streaming de forma simples; cancelável pelo chatId do metadata. */
+  public Disposable streamResponse(String apiKey, ResponsesRequest req, Consumer<String> onEvent) {
+    Disposable.Swap subscription = Disposables.swap();
+    Runnable unregister = cancellations.register(chatIdOf(req), subscription::dispose);
+    subscription.update(streamResponse(apiKey, req).doFinally(s -> unregister.run()).subscribe(onEvent));
+    return subscription;
   }
 }
@@ -0,0 +1,25 @@
+package br.com.ia.services.client.responses;
+
+import java.util.function.Predicate;
+
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+/**
+ * O que conta como falha para os circuit breakers {@code iaClient}: rede, timeout, 408, 429 e
+ * 5xx. Os demais 4xx são erro do request (schema, cadeia expirada, api key) e não dizem nada
+ * sobre a saúde da API, então não abrem o circuito.
+ * <p>
+ * Referenciado em {@code resilience4j.circuitbreaker.configs.iaClient.recordFailurePredicate}.
+ * </p>
+ */
+public class ResponsesFailurePredicate implements Predicate<Throwable> {
+
+	@Override
+	public boolean test(Throwable t) {
+		if (t instanceof WebClientResponseException e) {
+			int code = e.getStatusCode().value();
+			return code == 408 || code == 429 || code >= 500;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,281 @@
+package br.com.ia.services.client.responses;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import br.com.ia.model.responses.ResponsesRequest;
+import br.com.ia.model.responses.ResponsesRequest.ContentBlock;
+import br.com.ia.model.responses.ShardText;
+import reactor.core.publisher.Mono;
+
+/**
+ * Serializa o {@link ResponsesRequest} em streaming direto no buffer do corpo HTTP.
+ * <p>
+ * Blocos com {@link ShardText} não viram {@code String}: o payload do shard é gerado em
+ * UTF-8 num buffer por thread, escapado como string JSON e copiado no corpo com
+ * {@code writeRawUTF8String}. Shards estáveis guardam o fragmento já escapado, com chave pelo
+ * conteúdo (type, version e payload: versões são contadores por chat e, sozinhas, colidem entre
+ * chats), num LRU de {@code erp.ia.responses.fragment-cache-size} entradas.
+ * </p>
+ */
+@Component
+public class ResponsesRequestWriter {
+
+	private static final int MIN_BUFFER = 4 * 1024;
+	private static final int MAX_BUFFER_HINT = 4 * 1024 * 1024;
+	private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+	private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+	private final ObjectMapper mapper;
+	private final ObjectMapper writerMapper;
+	private final Map<FragmentKey, byte[]> fragments;
+
+	/** Máximo de fragmentos de shards estáveis em cache (0 desliga o cache). */
+	private final int fragmentCacheSize;
+
+	/** Tamanho do último corpo, usado para dimensionar o próximo buffer. */
+	private int sizeHint = MIN_BUFFER;
+
+	public ResponsesRequestWriter(ObjectMapper mapper,
+			@Value("${erp.ia.responses.fragment-cache-size:1024}") int fragmentCacheSize) {
+		this.mapper = mapper;
+		this.fragmentCacheSize = fragmentCacheSize;
+		this.fragments = new LinkedHashMap<>(64, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<FragmentKey, byte[]> eldest) {
+				return size() > fragmentCacheSize;
+			}
+		};
+		this.writerMapper = mapper.copy()
+				.registerModule(new SimpleModule().addSerializer(ContentBlock.class, new ContentBlockSerializer()));
+	}
+
+	/** Corpo do POST: escreve o JSON num único DataBuffer do próprio conector (Netty). */
+	public BodyInserter<ResponsesRequest, ReactiveHttpOutputMessage> inserter(ResponsesRequest req) {
+		return (message, context) -> {
+			DataBuffer buffer = message.bufferFactory().allocateBuffer(sizeHint);
+			try (OutputStream os = buffer.asOutputStream()) {
+				write(os, req);
+			} catch (IOException | RuntimeException e) {
+				DataBufferUtils.release(buffer);
+				return Mono.error(e);
+			}
+			int size = buffer.readableByteCount();
+			sizeHint = Math.max(MIN_BUFFER, Math.min(MAX_BUFFER_HINT, size));
+			message.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+			message.getHeaders().setContentLength(size);
+			return message.writeWith(Mono.just(buffer));
+		};
+	}
+
+	public void write(OutputStream out, ResponsesRequest req) throws IOException {
+		writerMapper.writeValue(out, req);
+	}
+
+	// ---------------- ContentBlock ----------------
+
+	private final class ContentBlockSerializer extends StdSerializer<ContentBlock> {
+
+		private static final long serialVersionUID = 1L;
+
+		ContentBlockSerializer() {
+			super(ContentBlock.class);
+		}
+
+		@Override
+		public void serialize(ContentBlock block, JsonGenerator gen, SerializerProvider provider) throws IOException {
+			gen.writeStartObject();
+			if (block.getType() != null)
+				gen.writeStringField("type", block.getType());
+			if (block.getShard() != null) {
+				gen.writeFieldName("text");
+				writeShard(gen, block.getShard());
+			} else if (block.getText() != null) {
+				gen.writeStringField("text", block.getText());
+			}
+			if (block.getImageUrl() != null)
+				gen.writeStringField("image_url", block.getImageUrl());
+			if (block.getFileId() != null)
+				gen.writeStringField("file_id", block.getFileId());
+			gen.writeEndObject();
+		}
+	}
+
+	private void writeShard(JsonGenerator gen, ShardText shard) throws IOException {
+		if (!(gen instanceof UTF8JsonGenerator)) {
+			gen.writeString(shard.render(mapper));
+			return;
+		}
+
+		byte[] cached = cachedFragment(shard);
+		if (cached != null) {
+			gen.writeRawUTF8String(cached, 0, cached.length);
+			return;
+		}
+
+		Buffers b = BUFFERS.get();
+		render(shard, b);
+		gen.writeRawUTF8String(b.escaped.array(), 0, b.escaped.size());
+		cache(shard, b.escaped);
+	}
+
+	/**
+	 * Bytes exatos (string JSON escapada, sem aspas) que o shard ocupa no corpo. Para shards
+	 * estáveis o fragmento fica no cache, então a escrita do corpo logo depois não renderiza
+	 * de novo.
+	 */
+	public byte[] fragment(ShardText shard) {
+		byte[] cached = cachedFragment(shard);
+		if (cached != null)
+			return cached;
+		Buffers b = BUFFERS.get();
+		render(shard, b);
+		byte[] bytes = cache(shard, b.escaped);
+		return bytes != null ? bytes : Arrays.copyOf(b.escaped.array(), b.escaped.size());
+	}
+
+	private byte[] cachedFragment(ShardText shard) {
+		if (!shard.stable() || fragmentCacheSize <= 0 || shard.payload() == null)
+			return null;
+		FragmentKey key = new FragmentKey(shard); // hash do payload fora do lock
+		synchronized (fragments) {
+			return fragments.get(key);
+		}
+	}
+
+	private byte[] cache(ShardText shard, Buf escaped) {
+		if (!shard.stable() || fragmentCacheSize <= 0 || shard.payload() == null)
+			return null;
+		byte[] bytes = Arrays.copyOf(escaped.array(), escaped.size());
+		FragmentKey key = new FragmentKey(shard);
+		synchronized (fragments) {
+			fragments.put(key, bytes);
+		}
+		return bytes;
+	}
+
+	/** {@code header\njson} em UTF-8 (b.raw) e depois escapado para string JSON (b.escaped). */
+	private void render(ShardText shard, Buffers b) {
+		b.raw.reset();
+		b.raw.writeBytes(shard.header().getBytes(StandardCharsets.UTF_8));
+		b.raw.write('\n');
+		int mark = b.raw.size();
+		try {
+			mapper.writeValue(b.raw, shard.payload());
+		} catch (IOException e) {
+			b.raw.truncate(mark);
+			b.raw.writeBytes(shard.errorPayload().getBytes(StandardCharsets.UTF_8));
+		}
+		escape(b.raw.array(), b.raw.size(), b.escaped);
+	}
+
+	/** Mesmo escape do gerador UTF-8 do Jackson: aspas, barra invertida e controles. */
+	private static void escape(byte[] in, int len, Buf out) {
+		out.reset();
+		out.ensure(len + (len >> 3) + 16);
+		for (int i = 0; i < len; i++) {
+			byte c = in[i];
+			// bytes >= 0x80 (sequências UTF-8) são negativos e passam direto
+			if (c < 0 || (c >= 0x20 && c != '"' && c != '\\')) {
+				out.write(c);
+				continue;
+			}
+			out.write('\\');
+			switch (c) {
+			case '"' -> out.write('"');
+			case '\\' -> out.write('\\');
+			case '\n' -> out.write('n');
+			case '\r' -> out.write('r');
+			case '\t' -> out.write('t');
+			case '\b' -> out.write('b');
+			case '\f' -> out.write('f');
+			default -> {
+				out.write('u');
+				out.write('0');
+				out.write('0');
+				out.write(HEX[c >> 4]);
+				out.write(HEX[c & 0xF]);
+			}
+			}
+		}
+	}
+
+	/**
+	 * Chave por conteúdo, com hash calculado uma vez. {@code Map.equals}/{@code hashCode} não
+	 * olham a ordem das chaves: payload equivalente reaproveita o fragmento.
+	 */
+	private static final class FragmentKey {
+		final String type;
+		final int version;
+		final Object payload;
+		final int hash;
+
+		FragmentKey(ShardText shard) {
+			this.type = shard.type();
+			this.version = shard.version();
+			this.payload = shard.payload();
+			this.hash = Objects.hash(type, version, payload);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof FragmentKey k && hash == k.hash && version == k.version
+					&& Objects.equals(type, k.type) && Objects.equals(payload, k.payload);
+		}
+	}
+
+	private static final class Buffers {
+		final Buf raw = new Buf(8 * 1024);
+		final Buf escaped = new Buf(8 * 1024);
+	}
+
+	/** ByteArrayOutputStream com acesso ao array interno (sem cópia em toByteArray). */
+	private static final class Buf extends ByteArrayOutputStream {
+
+		Buf(int size) {
+			super(size);
+		}
+
+		byte[] array() {
+			return buf;
+		}
+
+		void truncate(int size) {
+			count = size;
+		}
+
+		void ensure(int capacity) {
+			if (buf.length < capacity)
+				buf = Arrays.copyOf(buf, capacity);
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package br.com.ia.services.client.responses;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.binding.BindingsLifecycleController;
+import org.springframework.cloud.stream.binding.BindingsLifecycleController.State;
+import org.springframework.stereotype.Component;
+
+import br.com.ia.services.deadline.DeadlineExceededException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.timelimiter.TimeLimiterOperator;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Circuit breaker, bulkhead e time limiter da Responses API, um trio por modelo
+ * ({@code iaClient-<modelo>}). Cada instância herda a config compartilhada {@code iaClient}
+ * ({@code resilience4j.*.configs.iaClient.*}) e pode ser ajustada por modelo em
+ * {@code resilience4j.*.instances.iaClient-<modelo>.*}.
+ * <p>
+ * Com o circuito aberto a chamada falha na hora ({@code CallNotPermittedException}); antes de
+ * chamar, {@link #awaitPermission(String, Long)} estaciona a mensagem até o circuito ir para
+ * half-open (limitado por {@code erp.ia.resilience.park-max-ms} e pelo prazo do request).
+ * Quando os circuitos de todos os modelos com tráfego recente ({@code erp.ia.resilience.active-window-ms})
+ * estão abertos, os bindings de {@code erp.ia.resilience.pause-bindings} ficam pausados: o
+ * consumer para de buscar mensagens em vez de gastar as tentativas contra uma API fora do ar.
+ * Um modelo fora do ar não para os demais. Só pausa circuito que volta sozinho para half-open
+ * ({@code automaticTransitionFromOpenToHalfOpenEnabled}; FORCED_OPEN não conta): com o consumer
+ * parado ninguém mais pede permissão ao breaker, e é a transição que retoma os bindings.
+ * </p>
+ * O bulkhead aplicado pelo operador Reactor não espera vaga: cheio, falha na hora com
+ * {@code BulkheadFullException} ({@code maxWaitDuration} não tem efeito).
+ */
+@Slf4j
+@Component
+public class ResponsesResilience {
+
+	private static final String BASE_CONFIG = "iaClient";
+	private static final long PARK_STEP_MS = 250;
+
+	private record Guard(CircuitBreaker circuitBreaker, Bulkhead bulkhead, TimeLimiter timeLimiter,
+			AtomicLong lastUsed) {
+	}
+
+	private final CircuitBreakerRegistry circuitBreakers;
+	private final BulkheadRegistry bulkheads;
+	private final TimeLimiterRegistry timeLimiters;
+	private final ObjectProvider<BindingsLifecycleController> bindings;
+
+	private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+	private boolean paused;
+
+	@Value("${erp.ia.resilience.enabled:true}")
+	private boolean enabled;
+
+	/** Tempo máximo que uma mensagem espera o circuito sair de OPEN antes de falhar. */
+	@Value("${erp.ia.resilience.park-max-ms:60000}")
+	private long parkMaxMs;
+
+	/** Bindings pausados com circuito aberto (CSV; vazio desliga a pausa). */
+	@Value("${erp.ia.resilience.pause-bindings:processIa-in-0}")
+	private String pauseBindingsCsv;
+
+	/** Modelos usados nessa janela contam como "com tráfego" para a decisão de pausar. */
+	@Value("${erp.ia.resilience.active-window-ms:300000}")
+	private long activeWindowMs;
+
+	/**
+	 * Sem os registries do starter (auto-config excluída), usa os defaults do Resilience4j; o
+	 * de circuit breaker com transição automática para half-open, senão a pausa nunca acabaria.
+	 */
+	public ResponsesResilience(ObjectProvider<CircuitBreakerRegistry> circuitBreakers,
+			ObjectProvider<BulkheadRegistry> bulkheads, ObjectProvider<TimeLimiterRegistry> timeLimiters,
+			ObjectProvider<BindingsLifecycleController> bindings) {
+		this.circuitBreakers = circuitBreakers.getIfAvailable(() -> CircuitBreakerRegistry
+				.of(CircuitBreakerConfig.custom().automaticTransitionFromOpenToHalfOpenEnabled(true).build()));
+		this.bulkheads = bulkheads.getIfAvailable(BulkheadRegistry::ofDefaults);
+		this.timeLimiters = timeLimiters.getIfAvailable(TimeLimiterRegistry::ofDefaults);
+		this.bindings = bindings;
+	}
+
+	/** Aplica bulkhead (interno), time limiter e circuit breaker (externo) do modelo. */
+	public <T> Mono<T> decorate(String model, Mono<T> call) {
+		if (!enabled)
+			return call;
+		Guard g = guard(model);
+		return call
+				.transformDeferred(BulkheadOperator.of(g.bulkhead()))
+				.transformDeferred(TimeLimiterOperator.of(g.timeLimiter()))
+				.transformDeferred(CircuitBreakerOperator.of(g.circuitBreaker()));
+	}
+
+	/**
+	 * Estaciona a chamada enquanto o circuito do modelo estiver aberto. Com
+	 * {@code automaticTransitionFromOpenToHalfOpenEnabled} o estado muda sozinho após
+	 * {@code waitDurationInOpenState}; se passar de {@code park-max-ms}, segue e falha rápido.
+	 *
+	 * @param deadlineEpochMs prazo do request (ou null): a espera não passa dele
+	 * @throws DeadlineExceededException ({@code queue}) se o prazo vencer com o circuito aberto
+	 */
+	public void awaitPermission(String model, Long deadlineEpochMs) {
+		if (!enabled)
+			return;
+		CircuitBreaker cb = guard(model).circuitBreaker();
+		long limit = System.currentTimeMillis() + parkMaxMs;
+		if (deadlineEpochMs != null)
+			limit = Math.min(limit, deadlineEpochMs);
+		long wait;
+		while (isOpen(cb.getState()) && (wait = limit - System.currentTimeMillis()) > 0) {
+			try {
+				Thread.sleep(Math.min(wait, PARK_STEP_MS));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		if (deadlineEpochMs != null && isOpen(cb.getState()) && System.currentTimeMillis() >= deadlineEpochMs)
+			throw new DeadlineExceededException("queue", "Prazo do request venceu aguardando o circuito de " + model);
+	}
+
+	private Guard guard(String model) {
+		Guard g = guards.computeIfAbsent(model, this::create);
+		g.lastUsed().set(System.currentTimeMillis());
+		return g;
+	}
+
+	private Guard create(String model) {
+		String name = BASE_CONFIG + "-" + model;
+		CircuitBreaker cb = circuitBreakers.getConfiguration(BASE_CONFIG).isPresent()
+				? circuitBreakers.circuitBreaker(name, BASE_CONFIG)
+				: circuitBreakers.circuitBreaker(name);
+		Bulkhead bh = bulkheads.getConfiguration(BASE_CONFIG).isPresent()
+				? bulkheads.bulkhead(name, BASE_CONFIG)
+				: bulkheads.bulkhead(name);
+		TimeLimiter tl = timeLimiters.getConfiguration(BASE_CONFIG).isPresent()
+				? timeLimiters.timeLimiter(name, BASE_CONFIG)
+				: timeLimiters.timeLimiter(name);
+
+		cb.getEventPublisher().onStateTransition(e -> onTransition(cb, e.getStateTransition().getToState()));
+		return new Guard(cb, bh, tl, new AtomicLong(System.currentTimeMillis()));
+	}
+
+	/** Pausa quando todo modelo com tráfego recente está com o circuito aberto; retoma no primeiro que sair. */
+	private synchronized void onTransition(CircuitBreaker changed, CircuitBreaker.State to) {
+		log.warn("Circuito {} -> {}", changed.getName(), to);
+		long since = System.currentTimeMillis() - activeWindowMs;
+		boolean allOpen = true;
+		for (Guard g : guards.values()) {
+			CircuitBreaker cb = g.circuitBreaker();
+			if (cb != changed && g.lastUsed().get() < since)
+				continue; // sem tráfego recente: não segura nem libera a pausa
+			if (!pausable(cb, cb == changed ? to : cb.getState())) {
+				allOpen = false;
+				break;
+			}
+		}
+		if (allOpen != paused) {
+			paused = allOpen;
+			changeBindings(paused ? State.PAUSED : State.RESUMED);
+		}
+	}
+
+	/** Aberto e com volta automática para half-open (a transição é que retoma os bindings). */
+	private static boolean pausable(CircuitBreaker cb, CircuitBreaker.State state) {
+		return state == CircuitBreaker.State.OPEN
+				&& cb.getCircuitBreakerConfig().isAutomaticTransitionFromOpenToHalfOpenEnabled();
+	}
+
+	private void changeBindings(State state) {
+		BindingsLifecycleController controller = bindings.getIfAvailable();
+		if (controller == null || pauseBindingsCsv == null || pauseBindingsCsv.isBlank())
+			return;
+		for (String binding : pauseBindingsCsv.split(",")) {
+			if (binding.isBlank())
+				continue;
+			try {
+				controller.changeState(binding.trim(), state);
+				log.warn("Binding {} -> {}", binding.trim(), state);
+			} catch (RuntimeException e) {
+				log.warn("Falha ao mudar binding {} para {}: {}", binding.trim(), state, e.getMessage());
+			}
+		}
+	}
+
+	private static boolean isOpen(CircuitBreaker.State s) {
+		return s == CircuitBreaker.State.OPEN || s == CircuitBreaker.State.FORCED_OPEN;
+	}
+}
@@ -0,0 +1,174 @@
+package br.com.ia.services.client.responses;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.ia.model.responses.ResponsesResponse;
+import br.com.ia.model.responses.ResponsesResponse.OutputItem;
+import br.com.ia.model.responses.Usage;
+
+/**
+ * Leitura em streaming do corpo da Responses API, sem montar a árvore inteira:
+ * <ul>
+ * <li>{@code output_text} de todos os itens {@code message} vão concatenados para
+ * {@link ResponsesResponse#getOutputText()} (itens {@code reasoning}, que nos modelos de
+ * raciocínio vêm antes da mensagem, são pulados);</li>
+ * <li>{@code output} guarda só os itens acionáveis ({@code function_call});</li>
+ * <li>{@code usage} vira {@link Usage} direto dos tokens, sem mapa intermediário.</li>
+ * </ul>
+ */
+@Component
+public class ResponsesResponseParser {
+
+	private static final String MESSAGE = "message";
+	private static final String FUNCTION_CALL = "function_call";
+
+	private final JsonFactory factory;
+
+	public ResponsesResponseParser(ObjectMapper mapper) {
+		this.factory = mapper.getFactory();
+	}
+
+	public ResponsesResponse parse(InputStream in) throws IOException {
+		try (JsonParser p = factory.createParser(in)) {
+			if (p.nextToken() != JsonToken.START_OBJECT)
+				throw new IOException("Resposta da Responses API não é um objeto JSON");
+
+			ResponsesResponse r = new ResponsesResponse();
+			StringBuilder text = new StringBuilder();
+			StringBuilder refusal = new StringBuilder();
+			List<OutputItem> actionable = new ArrayList<>(2);
+
+			while (p.nextToken() == JsonToken.FIELD_NAME) {
+				String field = p.currentName();
+				JsonToken t = p.nextToken();
+				switch (field) {
+				case "id" -> r.setId(p.getValueAsString());
+				case "model" -> r.setModel(p.getValueAsString());
+				case "service_tier" -> r.setServiceTier(p.getValueAsString());
+				case "status" -> r.setStatus(p.getValueAsString());
+				case "output" -> {
+					if (t == JsonToken.START_ARRAY)
+						readOutput(p, text, refusal, actionable);
+					else
+						p.skipChildren();
+				}
+				case "usage" -> r.setUsage(t == JsonToken.START_OBJECT ? readUsage(p) : Usage.EMPTY);
+				default -> p.skipChildren();
+				}
+			}
+
+			r.setOutput(actionable);
+			if (!text.isEmpty())
+				r.setOutputText(text.toString());
+			else if (!refusal.isEmpty())
+				r.setOutputText(refusal.toString());
+			return r;
+		}
+	}
+
+	private void readOutput(JsonParser p, StringBuilder text, StringBuilder refusal, List<OutputItem> actionable)
+			throws IOException {
+		while (p.nextToken() == JsonToken.START_OBJECT) {
+			OutputItem item = new OutputItem();
+			// "type" pode vir depois de "content": o texto do item fica pendente até o fim do objeto
+			int textMark = text.length();
+			int refusalMark = refusal.length();
+
+			while (p.nextToken() == JsonToken.FIELD_NAME) {
+				String field = p.currentName();
+				JsonToken t = p.nextToken();
+				switch (field) {
+				case "type" -> item.setType(p.getValueAsString());
+				case "id" -> item.setId(p.getValueAsString());
+				case "role" -> item.setRole(p.getValueAsString());
+				case "status" -> item.setStatus(p.getValueAsString());
+				case "call_id" -> item.setCallId(p.getValueAsString());
+				case "name" -> item.setName(p.getValueAsString());
+				case "arguments" -> item.setArguments(t == JsonToken.VALUE_STRING ? p.getText()
+						: t == JsonToken.VALUE_NULL ? null : p.readValueAsTree().toString());
+				case "content" -> {
+					if (t == JsonToken.START_ARRAY)
+						readContent(p, text, refusal);
+					else
+						p.skipChildren();
+				}
+				default -> p.skipChildren();
+				}
+			}
+
+			if (FUNCTION_CALL.equals(item.getType())) {
+				actionable.add(item);
+			} else if (!MESSAGE.equals(item.getType())) {
+				text.setLength(textMark); // só mensagens contam como saída textual
+				refusal.setLength(refusalMark);
+			}
+		}
+	}
+
+	private void readContent(JsonParser p, StringBuilder text, StringBuilder refusal) throws IOException {
+		while (p.nextToken() == JsonToken.START_OBJECT) {
+			String type = null;
+			String value = null;
+			while (p.nextToken() == JsonToken.FIELD_NAME) {
+				String field = p.currentName();
+				JsonToken t = p.nextToken();
+				if ("type".equals(field))
+					type = p.getValueAsString();
+				else if (("text".equals(field) || "refusal".equals(field)) && t == JsonToken.VALUE_STRING)
+					value = p.getText();
+				else
+					p.skipChildren();
+			}
+			if (value == null)
+				continue;
+			if ("output_text".equals(type))
+				text.append(value);
+			else if ("refusal".equals(type))
+				refusal.append(value);
+		}
+	}
+
+	private static Usage readUsage(JsonParser p) throws IOException {
+		int input = 0;
+		int cached = 0;
+		int output = 0;
+		int reasoning = 0;
+		int total = -1;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			String field = p.currentName();
+			JsonToken t = p.nextToken();
+			switch (field) {
+			case "input_tokens" -> input = p.getValueAsInt();
+			case "output_tokens" -> output = p.getValueAsInt();
+			case "total_tokens" -> total = p.getValueAsInt();
+			case "input_tokens_details" -> cached = t == JsonToken.START_OBJECT ? detail(p, "cached_tokens") : 0;
+			case "output_tokens_details" -> reasoning = t == JsonToken.START_OBJECT ? detail(p, "reasoning_tokens") : 0;
+			default -> p.skipChildren();
+			}
+		}
+		return new Usage(input, cached, output, reasoning, total < 0 ? input + output : total);
+	}
+
+	private static int detail(JsonParser p, String key) throws IOException {
+		int v = 0;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			String field = p.currentName();
+			p.nextToken();
+			if (key.equals(field))
+				v = p.getValueAsInt();
+			else
+				p.skipChildren();
+		}
+		return v;
+	}
+}
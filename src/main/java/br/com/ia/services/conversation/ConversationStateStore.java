@@ -0,0 +1,151 @@
+package br.com.ia.services.conversation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import br.com.ia.model.responses.ResponsesRequest.ContentBlock;
+import br.com.ia.model.responses.ShardText;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Estado de conversa no servidor (modo conversa): guarda, por chatId + moduleKey, o id da
+ * última resposta e o conjunto de shards já enviados na cadeia, para continuar com
+ * {@code previous_response_id} mandando só o que é novo.
+ * <p>
+ * Regras:
+ * <ul>
+ * <li>a cadeia só continua se o conjunto (type, version) dos shards estáveis for o mesmo;
+ * qualquer mudança força envio completo e reinicia a cadeia;</li>
+ * <li>na continuação vão apenas shards voláteis ainda não enviados na cadeia (e o prompt);
+ * instructions são sempre reenviadas, a API não as herda da resposta anterior;</li>
+ * <li>a cadeia expira em {@code erp.ia.conversation.ttl-minutes} sem uso, ou quando a API
+ * recusa o {@code previous_response_id} ({@link #isChainError}).</li>
+ * </ul>
+ * Ligado globalmente por {@code erp.ia.conversation.enabled} ou por request com
+ * {@code options.conversation=true|false}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ConversationStateStore {
+
+	/** Continuação: id anterior e os blocos de shard que ainda precisam ir. */
+	public record Continuation(String previousResponseId, List<ContentBlock> blocks) {
+	}
+
+	private record State(String responseId, String stableKey, Set<String> sent, long expiresAt) {
+	}
+
+	private final Map<String, State> states = new ConcurrentHashMap<>();
+
+	@Value("${erp.ia.conversation.enabled:false}")
+	private boolean enabled;
+
+	@Value("${erp.ia.conversation.ttl-minutes:30}")
+	private long ttlMinutes;
+
+	@Value("${erp.ia.conversation.max-chats:50000}")
+	private int maxChats;
+
+	/** Modo conversa para este request (option explícita vence a configuração). */
+	public boolean enabledFor(Map<String, Object> opts) {
+		Object v = opts.get("conversation");
+		return v != null ? Boolean.parseBoolean(String.valueOf(v)) : enabled;
+	}
+
+	/** Continuação possível para os shards atuais, ou null para envio completo. */
+	public Continuation continuation(String chatId, String moduleKey, List<ContentBlock> shardBlocks) {
+		String key = key(chatId, moduleKey);
+		State st = states.get(key);
+		if (st == null)
+			return null;
+		if (st.expiresAt() < System.currentTimeMillis()) {
+			states.remove(key, st);
+			return null;
+		}
+		if (!st.stableKey().equals(stableKey(shardBlocks))) {
+			log.debug("Shards estáveis mudaram para {}: envio completo", key);
+			return null;
+		}
+
+		List<ContentBlock> novos = new ArrayList<>();
+		for (ContentBlock b : shardBlocks) {
+			ShardText s = b.getShard();
+			if (s != null && !s.stable() && !st.sent().contains(id(s)))
+				novos.add(b);
+		}
+		return new Continuation(st.responseId(), novos);
+	}
+
+	/** Registra a resposta como ponta da cadeia (após envio completo ou continuação). */
+	public void remember(String chatId, String moduleKey, String responseId, List<ContentBlock> shardBlocks,
+			boolean continued) {
+		if (responseId == null)
+			return;
+		String key = key(chatId, moduleKey);
+		State prev = continued ? states.get(key) : null;
+
+		Set<String> sent = prev != null ? new HashSet<>(prev.sent()) : new HashSet<>();
+		for (ContentBlock b : shardBlocks) {
+			ShardText s = b.getShard();
+			if (s != null && !s.stable())
+				sent.add(id(s));
+		}
+
+		evictIfFull();
+		long expiresAt = System.currentTimeMillis() + ttlMinutes * 60_000L;
+		states.put(key, new State(responseId, stableKey(shardBlocks), Set.copyOf(sent), expiresAt));
+	}
+
+	public void forget(String chatId, String moduleKey) {
+		states.remove(key(chatId, moduleKey));
+	}
+
+	/** Erro da API indicando que o previous_response_id não serve mais (expirado/inexistente). */
+	public static boolean isChainError(Throwable t) {
+		for (Throwable e = t; e != null; e = e.getCause()) {
+			if (e instanceof WebClientResponseException w) {
+				int code = w.getStatusCode().value();
+				String body = w.getResponseBodyAsString();
+				return (code == 400 || code == 404) && body.contains("previous_response");
+			}
+		}
+		return false;
+	}
+
+	private void evictIfFull() {
+		if (states.size() < maxChats)
+			return;
+		long now = System.currentTimeMillis();
+		states.values().removeIf(s -> s.expiresAt() < now);
+		if (states.size() >= maxChats)
+			states.clear();
+	}
+
+	private static String stableKey(List<ContentBlock> shardBlocks) {
+		Set<String> ids = new TreeSet<>();
+		for (ContentBlock b : shardBlocks) {
+			ShardText s = b.getShard();
+			if (s != null && s.stable())
+				ids.add(id(s));
+		}
+		return String.join("|", ids);
+	}
+
+	private static String id(ShardText s) {
+		return s.type() + ":" + s.version();
+	}
+
+	private static String key(String chatId, String moduleKey) {
+		return chatId + "|" + moduleKey;
+	}
+}
@@ -0,0 +1,22 @@
+package br.com.ia.services.deadline;
+
+/**
+ * O prazo ({@code ia-deadline}) do request passou: ninguém mais espera a resposta. Não é
+ * transitória (não vai para retry) e não gera resposta; o request é descartado.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Onde o prazo venceu: {@code arrival}, {@code queue} ou {@code upstream} (tag de métrica). */
+	private final String stage;
+
+	public DeadlineExceededException(String stage, String message) {
+		super(message, null, false, false);
+		this.stage = stage;
+	}
+
+	public String getStage() {
+		return stage;
+	}
+}
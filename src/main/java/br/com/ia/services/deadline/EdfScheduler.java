@@ -0,0 +1,305 @@
+package br.com.ia.services.deadline;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import br.com.ia.services.fairness.TenantFairness;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Vagas de chamada à Responses API, repartidas entre tenants por deficit round robin e, dentro
+ * de cada tenant, atendidas por menor prazo (earliest-deadline-first).
+ * <p>
+ * Com a concurrency do binder maior que {@code erp.ia.deadline.max-in-flight}, as mensagens
+ * que chegam com as vagas ocupadas esperam aqui, numa fila por tenant
+ * ({@link TenantFairness#tenantOf}). Cada vez que um tenant chega à frente da roda recebe
+ * {@code peso} vagas de crédito; um tenant pesado não passa na frente dos demais só por ter mais
+ * mensagens na fila. Dentro do tenant a próxima vaga vai para o menor {@code ia-deadline}
+ * (requests sem prazo ficam por último, em ordem de chegada). Tenant acima da cota de tokens
+ * perde a vez até a janela liberar. Quem vence o prazo na fila sai com
+ * {@link DeadlineExceededException} sem chamar a API. Com {@code max-in-flight <= 0} e sem cotas
+ * não há fila e tudo passa direto.
+ * </p>
+ * Métricas: {@code ia.deadline.expired} (tag {@code stage=arrival|queue|upstream}), o gauge
+ * {@code ia.deadline.queue.size} e, por tenant, o gauge {@code ia.fairness.queue.depth}, o timer
+ * {@code ia.fairness.wait} e o contador {@code ia.fairness.deferred} (entrou na fila por cota).
+ */
+@Component
+public class EdfScheduler {
+
+	private static final class Waiter implements Comparable<Waiter> {
+		final long deadline;
+		final long seq;
+		final CompletableFuture<Void> granted = new CompletableFuture<>();
+
+		Waiter(long deadline, long seq) {
+			this.deadline = deadline;
+			this.seq = seq;
+		}
+
+		@Override
+		public int compareTo(Waiter o) {
+			int c = Long.compare(deadline, o.deadline);
+			return c != 0 ? c : Long.compare(seq, o.seq);
+		}
+	}
+
+	/** Fila EDF de um tenant e seu crédito na roda. */
+	private static final class Lane {
+		final String tenant;
+		final int weight;
+		final PriorityQueue<Waiter> queue = new PriorityQueue<>();
+		final AtomicInteger depth = new AtomicInteger();
+		int deficit;
+		boolean turn;
+
+		Lane(String tenant, int weight) {
+			this.tenant = tenant;
+			this.weight = weight;
+		}
+	}
+
+	private final MeterRegistry registry;
+	private final TenantFairness fairness;
+	private final Map<String, Lane> lanes = new HashMap<>();
+	/** Tenants com mensagens na fila, na ordem da roda. */
+	private final ArrayDeque<Lane> active = new ArrayDeque<>();
+	private final AtomicLong seq = new AtomicLong();
+	private final int maxInFlight;
+	private int available;
+	private int queued;
+	private ScheduledExecutorService refill;
+
+	public EdfScheduler(ObjectProvider<MeterRegistry> registry, TenantFairness fairness,
+			@Value("${erp.ia.deadline.max-in-flight:0}") int maxInFlight) {
+		this.registry = registry.getIfAvailable(() -> Metrics.globalRegistry);
+		this.fairness = fairness;
+		this.maxInFlight = maxInFlight;
+		this.available = maxInFlight > 0 ? maxInFlight : Integer.MAX_VALUE;
+		Gauge.builder("ia.deadline.queue.size", this, EdfScheduler::queued).register(this.registry);
+	}
+
+	/** Com cotas, a janela libera tokens sem que nenhuma vaga seja devolvida: redistribui a cada balde. */
+	@PostConstruct
+	void startRefill() {
+		if (!fairness.hasQuotas())
+			return;
+		refill = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "ia-fairness-refill");
+			t.setDaemon(true);
+			return t;
+		});
+		long every = fairness.refillMs();
+		refill.scheduleWithFixedDelay(this::dispatch, every, every, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	void stopRefill() {
+		if (refill != null)
+			refill.shutdownNow();
+	}
+
+	/**
+	 * Executa {@code work} quando o tenant tiver a vez e houver vaga, respeitando a ordem de
+	 * prazo dentro do tenant.
+	 *
+	 * @param tenant   tenant do request ({@link TenantFairness#tenantOf})
+	 * @param deadline prazo absoluto (epoch ms) ou 0 se não houver
+	 */
+	public <T> T run(String tenant, long deadline, Callable<T> work) throws Exception { // NOSONAR
+		if (maxInFlight <= 0 && !fairness.hasQuotas())
+			return work.call();
+		acquire(tenant, deadline);
+		try {
+			return work.call();
+		} finally {
+			release();
+		}
+	}
+
+	/** Conta um request descartado por prazo vencido. */
+	public void expired(String stage) {
+		Counter.builder("ia.deadline.expired").tag("stage", stage).register(registry).increment();
+	}
+
+	private void acquire(String tenant, long deadline) throws InterruptedException {
+		long start = System.nanoTime();
+		Waiter w;
+		Lane lane;
+		synchronized (this) {
+			boolean allowed = fairness.allows(tenant);
+			if (available > 0 && queued == 0 && allowed) {
+				available--;
+				waited(tenant, start);
+				return;
+			}
+			if (!allowed)
+				Counter.builder("ia.fairness.deferred").tag("tenant", tenant).register(registry).increment();
+			lane = laneOf(tenant);
+			w = new Waiter(deadline > 0 ? deadline : Long.MAX_VALUE, seq.incrementAndGet());
+			enqueue(lane, w);
+			dispatch();
+		}
+
+		try {
+			if (deadline > 0) {
+				w.granted.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+			} else {
+				w.granted.get();
+			}
+			waited(tenant, start);
+		} catch (TimeoutException e) {
+			synchronized (this) {
+				if (!w.granted.isDone()) {
+					remove(lane, w);
+					throw new DeadlineExceededException("queue", "Prazo do request venceu na fila do processor");
+				}
+			}
+			// recebeu a vaga no limite: devolve e desiste, o prazo já passou
+			release();
+			throw new DeadlineExceededException("queue", "Prazo do request venceu na fila do processor");
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			synchronized (this) {
+				if (!w.granted.isDone()) {
+					remove(lane, w);
+					throw e;
+				}
+			}
+			release();
+			throw e;
+		}
+	}
+
+	/** Devolve a vaga e a passa para o próximo da roda. */
+	private synchronized void release() {
+		available++;
+		dispatch();
+	}
+
+	/** Entrega as vagas livres aos próximos da roda (tenants dentro da cota). */
+	private synchronized void dispatch() {
+		Waiter next;
+		while (available > 0 && (next = nextWaiter()) != null) {
+			available--;
+			next.granted.complete(null);
+		}
+	}
+
+	/**
+	 * Deficit round robin: o tenant à frente da roda ganha {@code peso} de crédito ao receber a
+	 * vez e é atendido enquanto tiver crédito; depois vai para o fim. Tenant acima da cota passa
+	 * a vez sem gastar crédito.
+	 */
+	private Waiter nextWaiter() {
+		long now = System.currentTimeMillis();
+		int skipped = 0;
+		while (!active.isEmpty() && skipped < active.size()) {
+			Lane lane = active.peekFirst();
+			dropExpired(lane, now);
+			if (lane.queue.isEmpty()) {
+				leave(lane);
+				continue;
+			}
+			if (!fairness.allows(lane.tenant)) {
+				rotate(lane);
+				skipped++;
+				continue;
+			}
+			if (!lane.turn) {
+				lane.deficit += lane.weight;
+				lane.turn = true;
+			}
+			lane.deficit--;
+			Waiter w = lane.queue.poll();
+			lane.depth.decrementAndGet();
+			queued--;
+			if (lane.queue.isEmpty())
+				leave(lane);
+			else if (lane.deficit <= 0)
+				rotate(lane);
+			return w;
+		}
+		return null;
+	}
+
+	/** Vencidos na fila: o próprio waiter sai por timeout; aqui só não recebem vaga. */
+	private void dropExpired(Lane lane, long now) {
+		Waiter head;
+		while ((head = lane.queue.peek()) != null && head.deadline != Long.MAX_VALUE && head.deadline <= now) {
+			lane.queue.poll();
+			lane.depth.decrementAndGet();
+			queued--;
+		}
+	}
+
+	private Lane laneOf(String tenant) {
+		return lanes.computeIfAbsent(tenant, t -> {
+			Lane l = new Lane(t, fairness.weightOf(t));
+			Gauge.builder("ia.fairness.queue.depth", l.depth, AtomicInteger::get).tag("tenant", t).register(registry);
+			return l;
+		});
+	}
+
+	private void enqueue(Lane lane, Waiter w) {
+		if (lane.queue.isEmpty())
+			active.addLast(lane);
+		lane.queue.add(w);
+		lane.depth.incrementAndGet();
+		queued++;
+	}
+
+	private void remove(Lane lane, Waiter w) {
+		if (lane.queue.remove(w)) {
+			lane.depth.decrementAndGet();
+			queued--;
+		}
+		if (lane.queue.isEmpty() && active.remove(lane)) {
+			lane.deficit = 0;
+			lane.turn = false;
+		}
+	}
+
+	private void leave(Lane lane) {
+		active.remove(lane);
+		lane.deficit = 0;
+		lane.turn = false;
+	}
+
+	private void rotate(Lane lane) {
+		active.remove(lane);
+		lane.turn = false;
+		active.addLast(lane);
+	}
+
+	private void waited(String tenant, long startNanos) {
+		Timer.builder("ia.fairness.wait").tag("tenant", tenant).register(registry)
+				.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+	}
+
+	private synchronized int queued() {
+		return queued;
+	}
+}
@@ -0,0 +1,188 @@
+package br.com.ia.services.fairness;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import br.com.ia.model.responses.Usage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Tenants do processor ({@code moduleKey} e/ou api key), com peso na fila de vagas e cota de
+ * tokens em janela deslizante.
+ * <p>
+ * A cota ({@code erp.ia.fairness.token-quotas}) não rejeita: o tenant acima dela fica sem vez
+ * na fila do {@code EdfScheduler} até a janela liberar tokens (ou o prazo do request vencer).
+ * O consumo é contado por baldes ({@code erp.ia.fairness.quota-buckets}) em
+ * {@link AtomicLongArray}, sem lock; como o consumo só é conhecido depois da chamada, a cota é
+ * suave e pode passar em até {@code max-in-flight} chamadas.
+ * </p>
+ * Gauge {@code ia.fairness.tokens} (tag {@code tenant}) com o consumo na janela.
+ */
+@Component
+public class TenantFairness {
+
+	/** Chave do tenant: "module", "api-key" ou "module+api-key". */
+	@Value("${erp.ia.fairness.tenant-key:module}")
+	private String tenantKey;
+
+	/** Pesos por tenant ("fiscal=3,generic=1"); ausentes valem 1. */
+	@Value("${erp.ia.fairness.weights:}")
+	private String weightsCsv;
+
+	/** Cotas de tokens por janela ("fiscal=200000,*=500000"); "*" vale para os demais. */
+	@Value("${erp.ia.fairness.token-quotas:}")
+	private String quotasCsv;
+
+	@Value("${erp.ia.fairness.quota-window-ms:60000}")
+	private long windowMs;
+
+	@Value("${erp.ia.fairness.quota-buckets:12}")
+	private int buckets;
+
+	private final MeterRegistry registry;
+	private final Map<String, Window> windows = new ConcurrentHashMap<>();
+	private Map<String, Integer> weights = Map.of();
+	private Map<String, Long> quotas = Map.of();
+	private long bucketMs;
+
+	public TenantFairness(ObjectProvider<MeterRegistry> registry) {
+		this.registry = registry.getIfAvailable(() -> Metrics.globalRegistry);
+	}
+
+	@PostConstruct
+	void init() {
+		Map<String, Integer> w = new HashMap<>();
+		pairs(weightsCsv).forEach((k, v) -> w.put(k, Math.max(1, Integer.parseInt(v))));
+		weights = Map.copyOf(w);
+
+		Map<String, Long> q = new HashMap<>();
+		pairs(quotasCsv).forEach((k, v) -> q.put(k, Long.parseLong(v)));
+		quotas = Map.copyOf(q);
+
+		buckets = Math.max(1, buckets);
+		bucketMs = Math.max(1, windowMs / buckets);
+	}
+
+	/** Tenant do request conforme {@code erp.ia.fairness.tenant-key}. */
+	public String tenantOf(String moduleKey, String apiKey) {
+		return switch (tenantKey) {
+		case "api-key" -> keyTag(apiKey);
+		case "module+api-key" -> moduleKey + "/" + keyTag(apiKey);
+		default -> moduleKey;
+		};
+	}
+
+	public int weightOf(String tenant) {
+		return weights.getOrDefault(tenant, 1);
+	}
+
+	/** true se há cota configurada para algum tenant (a fila precisa existir mesmo sem limite de vagas). */
+	public boolean hasQuotas() {
+		return !quotas.isEmpty();
+	}
+
+	/** Intervalo em que a janela libera tokens (um balde). */
+	public long refillMs() {
+		return bucketMs;
+	}
+
+	/** true se o tenant ainda está dentro da cota da janela. */
+	public boolean allows(String tenant) {
+		Long quota = quotaOf(tenant);
+		if (quota == null)
+			return true;
+		Window w = windows.get(tenant);
+		return w == null || w.sum(System.currentTimeMillis() / bucketMs) < quota;
+	}
+
+	/** Lança o consumo de uma chamada concluída na janela do tenant. */
+	public void charge(String tenant, Usage usage) {
+		if (usage == null || usage.totalTokens() <= 0 || quotaOf(tenant) == null)
+			return;
+		windows.computeIfAbsent(tenant, this::newWindow).add(System.currentTimeMillis() / bucketMs, usage.totalTokens());
+	}
+
+	private Long quotaOf(String tenant) {
+		Long q = quotas.get(tenant);
+		return q != null ? q : quotas.get("*");
+	}
+
+	private Window newWindow(String tenant) {
+		Window w = new Window(buckets);
+		Gauge.builder("ia.fairness.tokens", w, x -> x.sum(System.currentTimeMillis() / bucketMs))
+				.tag("tenant", tenant).register(registry);
+		return w;
+	}
+
+	/** Api key nunca vai para métrica/log: só um prefixo do SHA-256. */
+	private static String keyTag(String apiKey) {
+		if (apiKey == null)
+			return "key-none";
+		try {
+			byte[] h = MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+			return "key-" + HexFormat.of().formatHex(h, 0, 4);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Map<String, String> pairs(String csv) {
+		Map<String, String> out = new HashMap<>();
+		if (csv == null)
+			return out;
+		for (String pair : csv.split(",")) {
+			int i = pair.indexOf('=');
+			if (i > 0)
+				out.put(pair.substring(0, i).trim(), pair.substring(i + 1).trim());
+		}
+		return out;
+	}
+
+	/**
+	 * Janela deslizante em baldes: cada balde guarda o número do intervalo a que pertence e o
+	 * total dele. Balde de intervalo antigo é reaproveitado (zerado) no primeiro lançamento.
+	 */
+	private static final class Window {
+		final AtomicLongArray slotOf;
+		final AtomicLongArray tokens;
+		final int size;
+
+		Window(int size) {
+			this.size = size;
+			this.slotOf = new AtomicLongArray(size);
+			this.tokens = new AtomicLongArray(size);
+			for (int i = 0; i < size; i++)
+				slotOf.set(i, -1);
+		}
+
+		void add(long slot, long n) {
+			int i = (int) (slot % size);
+			long owner = slotOf.get(i);
+			if (owner != slot && slotOf.compareAndSet(i, owner, slot))
+				tokens.set(i, 0); // lançamento concorrente na virada pode se perder: cota é aproximada
+			tokens.addAndGet(i, n);
+		}
+
+		long sum(long slot) {
+			long total = 0;
+			for (int i = 0; i < size; i++) {
+				if (slotOf.get(i) > slot - size)
+					total += tokens.get(i);
+			}
+			return total;
+		}
+	}
+}
@@ -0,0 +1,281 @@
+package br.com.ia.services.idempotency;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import br.com.ia.model.IaResponse;
+import br.com.ia.services.deadline.DeadlineExceededException;
+import br.com.ia.sdk.transport.IaWireCodec;
+import br.com.ia.sdk.transport.WireFormat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Idempotência do {@code IaProcessor} por {@code ia-request-id}: reentregas do Kafka (retry do
+ * binder, rebalance, commit perdido) não geram nova chamada paga.
+ * <p>
+ * Dois níveis:
+ * <ul>
+ * <li>índice local (memória, {@code erp.ia.idempotency.local-ttl-ms}): a reentrega na mesma
+ * instância espera o future da chamada em andamento ou recebe a resposta já pronta;</li>
+ * <li>claim durável (tabela {@code ia_idempotency}): a primeira instância insere o claim
+ * IN_FLIGHT; outra instância que receba o mesmo request (partição rebalanceada) espera o DONE
+ * e republica a resposta gravada. Claim sem conclusão após {@code lease-ms} é assumido.</li>
+ * </ul>
+ * Falha, descarte ou retry liberam o claim ({@link #release}), para a próxima entrega
+ * processar de novo. Métrica {@code ia.idempotency.duplicates} (tag {@code source=local|durable}).
+ * </p>
+ */
+@Slf4j
+@Component
+public class IdempotencyGuard {
+
+	private static final long POLL_MS = 250;
+
+	/**
+	 * Resultado de {@link #begin}: dono da chamada ou resposta já produzida. O dono guarda a
+	 * entrada local que inseriu, para {@link #release} não remover a de outra entrega.
+	 */
+	public static final class Claim {
+
+		static final Claim OWNED = new Claim(true, null, null);
+
+		private final boolean owner;
+		private final IaResponse response;
+		private final Local local;
+
+		private Claim(boolean owner, IaResponse response, Local local) {
+			this.owner = owner;
+			this.response = response;
+			this.local = local;
+		}
+
+		static Claim owned(Local local) {
+			return new Claim(true, null, local);
+		}
+
+		static Claim done(IaResponse response) {
+			return new Claim(false, response, null);
+		}
+
+		public boolean owner() {
+			return owner;
+		}
+
+		public IaResponse response() {
+			return response;
+		}
+	}
+
+	private record Local(CompletableFuture<IaResponse> future, long createdAt) {
+	}
+
+	private final IdempotencyRepository repository;
+	private final IaWireCodec codec;
+	private final MeterRegistry registry;
+	private final String instanceId = UUID.randomUUID().toString();
+	private final Map<String, Local> local = new ConcurrentHashMap<>();
+
+	@Value("${erp.ia.idempotency.enabled:true}")
+	private boolean enabled;
+
+	@Value("${erp.ia.idempotency.local-ttl-ms:300000}")
+	private long localTtlMs;
+
+	/** Tempo sem conclusão após o qual o claim de outra instância é considerado abandonado. */
+	@Value("${erp.ia.idempotency.lease-ms:180000}")
+	private long leaseMs;
+
+	@Value("${erp.ia.idempotency.retention-minutes:1440}")
+	private long retentionMinutes;
+
+	private ScheduledExecutorService purger;
+
+	public IdempotencyGuard(IdempotencyRepository repository, IaWireCodec codec,
+			ObjectProvider<MeterRegistry> registry) {
+		this.repository = repository;
+		this.codec = codec;
+		this.registry = registry.getIfAvailable(() -> Metrics.globalRegistry);
+	}
+
+	@PostConstruct
+	void startPurge() {
+		if (!enabled)
+			return;
+		purger = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "ia-idempotency-purge");
+			t.setDaemon(true);
+			return t;
+		});
+		purger.scheduleWithFixedDelay(this::purge, 1, 1, TimeUnit.MINUTES);
+	}
+
+	@PreDestroy
+	void stopPurge() {
+		if (purger != null)
+			purger.shutdownNow();
+	}
+
+	/**
+	 * Reivindica o request. Se outra entrega do mesmo id estiver em andamento, espera por ela
+	 * (até {@code deadline}, se houver, ou o lease; vencido o lease, assume o lugar dela).
+	 *
+	 * @return {@link Claim#owner()} true se esta entrega deve chamar a API; senão a resposta
+	 *         a republicar
+	 * @throws DeadlineExceededException ({@code queue}) se o prazo vencer esperando a outra
+	 *         entrega
+	 */
+	public Claim begin(String requestId, long deadline) throws InterruptedException {
+		if (!enabled || requestId == null)
+			return Claim.OWNED;
+		long limit = deadline > 0 ? deadline : System.currentTimeMillis() + leaseMs;
+
+		while (true) {
+			// 1) índice local
+			Local mine = new Local(new CompletableFuture<>(), System.currentTimeMillis());
+			Local existing = local.putIfAbsent(requestId, mine);
+			if (existing != null) {
+				IaResponse res = await(existing.future(), limit);
+				if (res != null) {
+					duplicate("local");
+					return Claim.done(res);
+				}
+				if (System.currentTimeMillis() < limit)
+					continue; // a outra entrega liberou o claim: tenta de novo
+				if (deadline > 0)
+					throw new DeadlineExceededException("queue", "Prazo venceu aguardando outra entrega de " + requestId);
+				// lease vencido sem conclusão: assume o lugar da entrega travada
+				if (!local.replace(requestId, existing, mine))
+					continue;
+			}
+
+			// 2) claim durável
+			Optional<IaResponse> durable = claimDurable(requestId, limit);
+			if (durable.isPresent()) {
+				local.remove(requestId, mine);
+				mine.future().complete(durable.get());
+				duplicate("durable");
+				return Claim.done(durable.get());
+			}
+			return Claim.owned(mine);
+		}
+	}
+
+	/** Grava a resposta produzida e acorda quem esperava pela mesma entrega. */
+	public void complete(String requestId, IaResponse response) {
+		if (!enabled || requestId == null)
+			return;
+		try {
+			repository.complete(requestId, codec.encode(response, WireFormat.SMILE), Instant.now());
+		} catch (IOException | RuntimeException e) {
+			log.warn("Falha ao gravar conclusão idempotente de {}: {}", requestId, e.getMessage());
+		}
+		Local l = local.get(requestId);
+		if (l != null)
+			l.future().complete(response);
+	}
+
+	/**
+	 * Libera o claim sem resposta (falha, retry, descarte): a próxima entrega processa. Só sai
+	 * do índice local a entrada inserida por esta entrega ({@code claim}).
+	 */
+	public void release(String requestId, Claim claim) {
+		if (!enabled || requestId == null || claim == null || !claim.owner())
+			return;
+		try {
+			repository.release(requestId, instanceId);
+		} catch (RuntimeException e) {
+			log.warn("Falha ao liberar claim idempotente de {}: {}", requestId, e.getMessage());
+		}
+		Local mine = claim.local;
+		if (mine != null && local.remove(requestId, mine))
+			mine.future().complete(null);
+	}
+
+	private Optional<IaResponse> claimDurable(String requestId, long limit) throws InterruptedException {
+		try {
+			repository.claim(requestId, instanceId, Instant.now());
+			return Optional.empty();
+		} catch (DataIntegrityViolationException e) {
+			// já reivindicado: pronto, em andamento em outra instância ou abandonado
+		} catch (RuntimeException e) {
+			log.warn("Claim idempotente indisponível para {} ({}); seguindo sem", requestId, e.getMessage());
+			return Optional.empty();
+		}
+
+		while (true) {
+			Optional<IdempotencyRecord> rec = repository.findById(requestId);
+			if (rec.isEmpty()) {
+				// liberado entre o insert e a leitura: tenta reivindicar de novo
+				try {
+					repository.claim(requestId, instanceId, Instant.now());
+					return Optional.empty();
+				} catch (DataIntegrityViolationException e) {
+					continue;
+				}
+			}
+			IdempotencyRecord r = rec.get();
+			if (IdempotencyRecord.DONE.equals(r.getStatus()) && r.getData() != null) {
+				try {
+					return Optional.of(codec.decode(r.getData(), WireFormat.SMILE, IaResponse.class));
+				} catch (IOException e) {
+					log.warn("Resposta idempotente ilegível para {}: {}", requestId, e.getMessage());
+					return Optional.empty();
+				}
+			}
+			if (instanceId.equals(r.getOwner()))
+				return Optional.empty();
+
+			Instant now = Instant.now();
+			if (repository.takeOver(requestId, instanceId, now, now.minusMillis(leaseMs)) > 0) {
+				log.info("Claim idempotente de {} assumido (lease de {} vencido)", requestId, r.getOwner());
+				return Optional.empty();
+			}
+			if (System.currentTimeMillis() >= limit)
+				return Optional.empty();
+			Thread.sleep(POLL_MS);
+		}
+	}
+
+	private static IaResponse await(CompletableFuture<IaResponse> f, long limit) throws InterruptedException {
+		try {
+			return f.get(Math.max(0, limit - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException | ExecutionException e) {
+			return null;
+		}
+	}
+
+	private void duplicate(String source) {
+		Counter.builder("ia.idempotency.duplicates").tag("source", source).register(registry).increment();
+	}
+
+	private void purge() {
+		long cutoff = System.currentTimeMillis() - localTtlMs;
+		local.entrySet().removeIf(e -> e.getValue().future().isDone() && e.getValue().createdAt() < cutoff);
+		try {
+			repository.deleteClaimedBefore(Instant.now().minus(Duration.ofMinutes(retentionMinutes)));
+		} catch (RuntimeException e) {
+			log.warn("Falha ao expurgar ia_idempotency: {}", e.getMessage());
+		}
+	}
+}
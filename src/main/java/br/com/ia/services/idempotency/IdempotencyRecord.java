@@ -0,0 +1,50 @@
+package br.com.ia.services.idempotency;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Table(name = "ia_idempotency", indexes = { @Index(name = "idx_idempotency_claimed", columnList = "claimed_at") })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+
+	public static final String IN_FLIGHT = "IN_FLIGHT";
+	public static final String DONE = "DONE";
+
+	/** Header ia-request-id do request */
+	@Id
+	@Column(name = "request_id", length = 64)
+	private String requestId;
+
+	/** IN_FLIGHT enquanto uma instância chama a API; DONE com a resposta gravada */
+	@Column(name = "status", length = 16, nullable = false)
+	private String status;
+
+	/** Instância do processor dona do claim */
+	@Column(name = "owner", length = 64, nullable = false)
+	private String owner;
+
+	/** Início do claim (lease) ou conclusão */
+	@Column(name = "claimed_at", nullable = false)
+	private Instant claimedAt;
+
+	/** IaResponse em Smile (só em DONE) */
+	@Lob
+	@Column(name = "data")
+	private byte[] data;
+}
@@ -0,0 +1,40 @@
+package br.com.ia.services.idempotency;
+
+import java.time.Instant;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface IdempotencyRepository extends JpaRepository<IdempotencyRecord, String> {
+
+	/** Insert puro (sem merge): falha com violação de PK se outra instância já tem o claim. */
+	@Transactional
+	@Modifying
+	@Query(value = "insert into ia_idempotency (request_id, status, owner, claimed_at) values (:id, 'IN_FLIGHT', :owner, :at)", nativeQuery = true)
+	int claim(@Param("id") String requestId, @Param("owner") String owner, @Param("at") Instant at);
+
+	/** Assume um claim IN_FLIGHT com lease vencido (o dono morreu ou perdeu a partição). */
+	@Transactional
+	@Modifying
+	@Query("update IdempotencyRecord r set r.owner = :owner, r.claimedAt = :at where r.requestId = :id and r.status = 'IN_FLIGHT' and r.claimedAt < :staleBefore")
+	int takeOver(@Param("id") String requestId, @Param("owner") String owner, @Param("at") Instant at,
+			@Param("staleBefore") Instant staleBefore);
+
+	@Transactional
+	@Modifying
+	@Query("update IdempotencyRecord r set r.status = 'DONE', r.data = :data, r.claimedAt = :at where r.requestId = :id")
+	int complete(@Param("id") String requestId, @Param("data") byte[] data, @Param("at") Instant at);
+
+	@Transactional
+	@Modifying
+	@Query("delete from IdempotencyRecord r where r.requestId = :id and r.owner = :owner and r.status = 'IN_FLIGHT'")
+	int release(@Param("id") String requestId, @Param("owner") String owner);
+
+	@Transactional
+	@Modifying
+	@Query("delete from IdempotencyRecord r where r.claimedAt < :cutoff")
+	int deleteClaimedBefore(@Param("cutoff") Instant cutoff);
+}
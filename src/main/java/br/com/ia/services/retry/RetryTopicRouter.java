@@ -0,0 +1,214 @@
+package br.com.ia.services.retry;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.http.HttpHeaders;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import br.com.ia.model.IaRequest;
+import br.com.ia.sdk.transport.IaHeaders;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Retry não bloqueante de {@code ia.requests} em tópicos escalonados.
+ * <p>
+ * Uma falha transitória não é mais repetida no lugar (o que travava a partição): o processor
+ * publica o request original em {@code ia.requests.retry-<n>} com os headers
+ * {@value #ATTEMPT} e {@value #NOT_BEFORE} e segue para o próximo. O atraso é o do tier da
+ * tentativa ou o {@code Retry-After} da API, o que for maior, e a mensagem vai para o menor tier
+ * cujo atraso cobre esse valor: assim cada tópico recebe atrasos parecidos e a cabeça da fila
+ * não segura por muito tempo mensagens que vencem antes dela. Cada tier tem o seu listener,
+ * que devolve a mensagem vencida para {@code ia.requests}; a não vencida volta com
+ * {@code nack(sleep)} (partição pausada, sem dormir na thread do consumer). Esgotadas as
+ * tentativas, a mensagem vai para {@code ia.requests.DLT}.
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RetryTopicRouter {
+
+	public static final String ATTEMPT = "ia-retry-attempt";
+	public static final String NOT_BEFORE = "ia-retry-not-before";
+	public static final String LAST_ERROR = "ia-retry-error";
+
+	static final String REQUESTS = "ia.requests";
+	static final String TIER_PREFIX = "ia.requests.retry-";
+	static final String DLT = "ia.requests.DLT";
+
+	/** Pausa máxima de um nack; a mensagem é reavaliada a cada passo. */
+	private static final long NACK_STEP_MS = 30_000;
+
+	private final StreamBridge bridge;
+
+	/** Atraso de cada tier em ms (CSV); a quantidade de tiers é fixa nos listeners abaixo. */
+	@Value("${erp.ia.retry.delays-ms:5000,30000,120000}")
+	private String delaysCsv;
+
+	/** Teto para o Retry-After informado pela API. */
+	@Value("${erp.ia.retry.max-delay-ms:600000}")
+	private long maxDelayMs;
+
+	private volatile long[] delays;
+
+	/**
+	 * Agenda a próxima tentativa do request (payload original, antes de resolver claim-check).
+	 *
+	 * @return true se foi reagendado (ou descartado por vencer o prazo antes da próxima
+	 *         tentativa); false se os tiers acabaram e a mensagem foi para a DLT
+	 */
+	public boolean schedule(Message<IaRequest> original, Throwable error) {
+		int attempt = attemptOf(original.getHeaders()) + 1;
+		long[] d = delays();
+		String reason = String.valueOf(rootCause(error).getMessage());
+		if (reason.length() > 500)
+			reason = reason.substring(0, 500);
+
+		if (attempt > d.length) {
+			bridge.send(DLT, MessageBuilder.fromMessage(original)
+					.setHeader(ATTEMPT, attempt - 1)
+					.setHeader(LAST_ERROR, reason)
+					.build());
+			log.warn("Retries esgotados ({}): request enviado para {}", attempt - 1, DLT);
+			return false;
+		}
+
+		long delay = Math.min(maxDelayMs, Math.max(d[attempt - 1], retryAfterMs(error)));
+		long deadline = IaHeaders.deadlineOf(original.getHeaders());
+		if (IaHeaders.expired(deadline) || (deadline > 0 && System.currentTimeMillis() + delay >= deadline)) {
+			log.info("Falha transitória sem retry: a tentativa {} venceria depois do prazo do request", attempt);
+			return true;
+		}
+		int tier = tierFor(d, attempt - 1, delay);
+		bridge.send(TIER_PREFIX + tier, MessageBuilder.fromMessage(original)
+				.setHeader(ATTEMPT, attempt)
+				.setHeader(NOT_BEFORE, System.currentTimeMillis() + delay)
+				.setHeader(LAST_ERROR, reason)
+				.build());
+		log.info("Falha transitória; nova tentativa {} em {} ms via {}{}", attempt, delay, TIER_PREFIX, tier);
+		return true;
+	}
+
+	// ---------------- listeners dos tiers ----------------
+
+	@KafkaListener(topics = TIER_PREFIX + "1", groupId = "ia-processor-retry", containerFactory = "retryListenerContainerFactory")
+	public void tier1(Message<byte[]> message, Acknowledgment ack) {
+		forward(message, ack);
+	}
+
+	@KafkaListener(topics = TIER_PREFIX + "2", groupId = "ia-processor-retry", containerFactory = "retryListenerContainerFactory")
+	public void tier2(Message<byte[]> message, Acknowledgment ack) {
+		forward(message, ack);
+	}
+
+	@KafkaListener(topics = TIER_PREFIX + "3", groupId = "ia-processor-retry", containerFactory = "retryListenerContainerFactory")
+	public void tier3(Message<byte[]> message, Acknowledgment ack) {
+		forward(message, ack);
+	}
+
+	/**
+	 * Vencida: devolve os bytes como chegaram (mesmo formato/headers) e confirma. Senão, nack:
+	 * a mensagem é relida depois da pausa, sem confirmar o offset.
+	 */
+	private void forward(Message<byte[]> message, Acknowledgment ack) {
+		long due = IaHeaders.longOf(message.getHeaders().get(NOT_BEFORE));
+		long wait = due - System.currentTimeMillis();
+		if (wait > 0) {
+			ack.nack(Duration.ofMillis(Math.min(wait, NACK_STEP_MS)));
+			return;
+		}
+		bridge.send(REQUESTS, MessageBuilder.withPayload(message.getPayload())
+				.copyHeaders(message.getHeaders())
+				.setHeader(MessageHeaders.CONTENT_TYPE, message.getHeaders().get(MessageHeaders.CONTENT_TYPE))
+				.build());
+		ack.acknowledge();
+	}
+
+	/**
+	 * Tier (1-based) para o atraso: o menor, a partir do tier da tentativa, cujo atraso fixo
+	 * cobre {@code delay}; o último se nenhum cobrir.
+	 */
+	static int tierFor(long[] delays, int from, long delay) {
+		for (int i = from; i < delays.length; i++) {
+			if (delays[i] >= delay)
+				return i + 1;
+		}
+		return delays.length;
+	}
+
+	// ---------------- helpers ----------------
+
+	public static int attemptOf(MessageHeaders headers) {
+		return (int) IaHeaders.longOf(headers.get(ATTEMPT));
+	}
+
+	/** Retry-After (segundos ou data HTTP) ou retry-after-ms da resposta de erro; 0 se ausente. */
+	static long retryAfterMs(Throwable error) {
+		for (Throwable t = error; t != null; t = t.getCause()) {
+			if (t instanceof WebClientResponseException w) {
+				HttpHeaders h = w.getHeaders();
+				String ms = h.getFirst("retry-after-ms");
+				if (ms != null) {
+					try {
+						return (long) Double.parseDouble(ms.trim());
+					} catch (NumberFormatException ignored) {
+						// cai para o Retry-After
+					}
+				}
+				return parseRetryAfter(h.getFirst(HttpHeaders.RETRY_AFTER));
+			}
+		}
+		return 0;
+	}
+
+	static long parseRetryAfter(String value) {
+		if (value == null || value.isBlank())
+			return 0;
+		String v = value.trim();
+		try {
+			return (long) (Double.parseDouble(v) * 1000);
+		} catch (NumberFormatException e) {
+			try {
+				long at = ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+				return Math.max(0, at - System.currentTimeMillis());
+			} catch (DateTimeParseException ex) {
+				return 0;
+			}
+		}
+	}
+
+	private long[] delays() {
+		long[] d = delays;
+		if (d == null) {
+			List<Long> out = new ArrayList<>();
+			for (String s : delaysCsv.split(",")) {
+				if (!s.isBlank())
+					out.add(Long.parseLong(s.trim()));
+			}
+			// três listeners: tiers além do terceiro não teriam consumidor
+			delays = d = out.stream().limit(3).mapToLong(Long::longValue).toArray();
+		}
+		return d;
+	}
+
+	private static Throwable rootCause(Throwable t) {
+		Throwable r = t;
+		while (r.getCause() != null && r.getCause() != r)
+			r = r.getCause();
+		return r;
+	}
+}
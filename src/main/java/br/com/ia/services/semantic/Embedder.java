@@ -0,0 +1,21 @@
+package br.com.ia.services.semantic;
+
+/**
+ * Gera embeddings para o {@link SemanticCache}. Um bean desta interface substitui o
+ * {@link HashingEmbedder} padrão (ex.: modelo de embeddings da API).
+ * <p>
+ * Os vetores devem vir normalizados (norma L2 = 1): a similaridade do índice é o produto
+ * escalar.
+ * </p>
+ */
+public interface Embedder {
+
+	/** Identifica o embedder/versão; entra no escopo do cache (trocar de embedder não mistura vetores). */
+	String id();
+
+	/** Dimensão fixa dos vetores. */
+	int dimensions();
+
+	/** Embedding normalizado do texto. */
+	float[] embed(String text);
+}
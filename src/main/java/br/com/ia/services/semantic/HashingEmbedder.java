@@ -0,0 +1,103 @@
+package br.com.ia.services.semantic;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Embedder local e determinístico (feature hashing): palavras e trigramas de caracteres
+ * espalhados em {@code dimensions} posições com sinal, depois normalizado. Não entende
+ * sinônimos, mas aproxima paráfrases com as mesmas palavras em outra ordem, com acentuação ou
+ * pontuação diferentes. Sem rede nem modelo: serve de padrão e para testes.
+ */
+public class HashingEmbedder implements Embedder {
+
+	private final int dimensions;
+
+	public HashingEmbedder(int dimensions) {
+		this.dimensions = dimensions;
+	}
+
+	@Override
+	public String id() {
+		return "hashing-" + dimensions;
+	}
+
+	@Override
+	public int dimensions() {
+		return dimensions;
+	}
+
+	@Override
+	public float[] embed(String text) {
+		float[] v = new float[dimensions];
+		String norm = Normalizer.normalize(text == null ? "" : text, Normalizer.Form.NFD)
+				.replaceAll("\\p{M}", "")
+				.toLowerCase(Locale.ROOT)
+				.replaceAll("[^\\p{L}\\p{N}]+", " ")
+				.trim();
+		if (norm.isEmpty())
+			return v;
+
+		for (String word : norm.split(" ")) {
+			add(v, "w:" + word, 2f);
+			String padded = " " + word + " ";
+			for (int i = 0; i + 3 <= padded.length(); i++)
+				add(v, padded.substring(i, i + 3), 1f);
+		}
+
+		double sum = 0;
+		for (float x : v)
+			sum += x * x;
+		float inv = sum == 0 ? 0 : (float) (1 / Math.sqrt(sum));
+		for (int i = 0; i < v.length; i++)
+			v[i] *= inv;
+		return v;
+	}
+
+	private void add(float[] v, String feature, float weight) {
+		int h = murmur(feature.getBytes(StandardCharsets.UTF_8));
+		v[Math.floorMod(h, dimensions)] += (h & 0x80000000) == 0 ? weight : -weight;
+	}
+
+	/** MurmurHash3 32 bits (seed fixa): estável entre JVMs, ao contrário de String.hashCode + mistura. */
+	private static int murmur(byte[] data) {
+		int h = 0x9747b28c;
+		int len = data.length;
+		int i = 0;
+		while (i + 4 <= len) {
+			int k = (data[i] & 0xff) | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff) << 16 | (data[i + 3] & 0xff) << 24;
+			h ^= mixK(k);
+			h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;
+			i += 4;
+		}
+		int k = 0;
+		switch (len - i) {
+		case 3:
+			k ^= (data[i + 2] & 0xff) << 16;
+			// fall through
+		case 2:
+			k ^= (data[i + 1] & 0xff) << 8;
+			// fall through
+		case 1:
+			k ^= data[i] & 0xff;
+			h ^= mixK(k);
+			break;
+		default:
+			break;
+		}
+		h ^= len;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private static int mixK(int k) {
+		k *= 0xcc9e2d51;
+		k = Integer.rotateLeft(k, 15);
+		return k * 0x1b873593;
+	}
+}
@@ -0,0 +1,220 @@
+package br.com.ia.services.semantic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * Índice HNSW (Hierarchical Navigable Small World) em memória para vetores normalizados,
+ * similaridade por produto escalar.
+ * <p>
+ * Vetores em um único {@code float[]} contíguo (nó {@code i} em {@code [i*dim, (i+1)*dim)}) e
+ * vizinhos em {@code int[]} por nó e camada (posição 0 = quantidade), sem boxing. Nós só são
+ * acrescentados; remoção é por reconstrução no {@link SemanticCache}. Não é thread-safe: o
+ * chamador sincroniza.
+ * </p>
+ */
+final class HnswIndex {
+
+	/** Vizinho encontrado e sua similaridade. */
+	record Hit(int node, float similarity) {
+	}
+
+	private final int dim;
+	private final int m;
+	private final int m0;
+	private final int efConstruction;
+	private final double levelMult;
+	private final SplittableRandom random = new SplittableRandom(42);
+
+	private float[] vectors;
+	private int[][][] links;
+	private int count;
+	private int entry = -1;
+	private int maxLevel = -1;
+
+	HnswIndex(int dim, int m, int efConstruction, int initialCapacity) {
+		this.dim = dim;
+		this.m = m;
+		this.m0 = 2 * m;
+		this.efConstruction = efConstruction;
+		this.levelMult = 1 / Math.log(Math.max(2, m));
+		int cap = Math.max(16, initialCapacity);
+		this.vectors = new float[cap * dim];
+		this.links = new int[cap][][];
+	}
+
+	int size() {
+		return count;
+	}
+
+	/** Acrescenta o vetor e devolve o id do nó (sequencial a partir de 0). */
+	int add(float[] vector) {
+		int node = count;
+		grow(node + 1);
+		System.arraycopy(vector, 0, vectors, node * dim, dim);
+
+		int level = (int) (-Math.log(1 - random.nextDouble()) * levelMult);
+		links[node] = new int[level + 1][];
+		for (int l = 0; l <= level; l++)
+			links[node][l] = new int[(l == 0 ? m0 : m) + 1];
+		count++;
+
+		if (entry < 0) {
+			entry = node;
+			maxLevel = level;
+			return node;
+		}
+
+		int cur = entry;
+		for (int l = maxLevel; l > level; l--)
+			cur = greedy(vector, cur, l);
+
+		for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+			List<Hit> candidates = searchLayer(vector, cur, efConstruction, l);
+			int max = l == 0 ? m0 : m;
+			List<Hit> chosen = candidates.subList(0, Math.min(m, candidates.size()));
+			for (Hit h : chosen) {
+				link(node, h.node(), l, max);
+				link(h.node(), node, l, max);
+			}
+			cur = candidates.get(0).node();
+		}
+
+		if (level > maxLevel) {
+			maxLevel = level;
+			entry = node;
+		}
+		return node;
+	}
+
+	/** Até {@code k} vizinhos mais similares, do mais para o menos similar. */
+	List<Hit> search(float[] query, int k, int ef) {
+		if (entry < 0)
+			return List.of();
+		int cur = entry;
+		for (int l = maxLevel; l > 0; l--)
+			cur = greedy(query, cur, l);
+		List<Hit> found = searchLayer(query, cur, Math.max(ef, k), 0);
+		return found.size() <= k ? found : found.subList(0, k);
+	}
+
+	/** Cópia do vetor do nó (para reconstruir o índice). */
+	float[] vector(int node) {
+		return Arrays.copyOfRange(vectors, node * dim, (node + 1) * dim);
+	}
+
+	private float similarity(float[] query, int node) {
+		float s = 0;
+		int off = node * dim;
+		for (int i = 0; i < dim; i++)
+			s += query[i] * vectors[off + i];
+		return s;
+	}
+
+	private float similarity(int a, int b) {
+		float s = 0;
+		int oa = a * dim;
+		int ob = b * dim;
+		for (int i = 0; i < dim; i++)
+			s += vectors[oa + i] * vectors[ob + i];
+		return s;
+	}
+
+	/** Desce pela camada seguindo sempre o vizinho mais similar. */
+	private int greedy(float[] q, int start, int level) {
+		int cur = start;
+		float best = similarity(q, cur);
+		boolean moved = true;
+		while (moved) {
+			moved = false;
+			int[] nb = links[cur].length > level ? links[cur][level] : null;
+			if (nb == null)
+				break;
+			for (int i = 1; i <= nb[0]; i++) {
+				float s = similarity(q, nb[i]);
+				if (s > best) {
+					best = s;
+					cur = nb[i];
+					moved = true;
+				}
+			}
+		}
+		return cur;
+	}
+
+	/** Busca em largura limitada a {@code ef} candidatos; resultado do mais similar ao menos. */
+	private List<Hit> searchLayer(float[] q, int start, int ef, int level) {
+		BitSet visited = new BitSet(count);
+		PriorityQueue<Hit> candidates = new PriorityQueue<>(Comparator.comparingDouble(h -> -h.similarity()));
+		PriorityQueue<Hit> results = new PriorityQueue<>(Comparator.comparingDouble(Hit::similarity));
+
+		Hit first = new Hit(start, similarity(q, start));
+		visited.set(start);
+		candidates.add(first);
+		results.add(first);
+
+		while (!candidates.isEmpty()) {
+			Hit c = candidates.poll();
+			if (results.size() >= ef && c.similarity() < results.peek().similarity())
+				break;
+			int[][] nodeLinks = links[c.node()];
+			if (nodeLinks.length <= level)
+				continue;
+			int[] nb = nodeLinks[level];
+			for (int i = 1; i <= nb[0]; i++) {
+				int n = nb[i];
+				if (visited.get(n))
+					continue;
+				visited.set(n);
+				float s = similarity(q, n);
+				if (results.size() < ef || s > results.peek().similarity()) {
+					Hit h = new Hit(n, s);
+					candidates.add(h);
+					results.add(h);
+					if (results.size() > ef)
+						results.poll();
+				}
+			}
+		}
+
+		List<Hit> out = new ArrayList<>(results);
+		out.sort(Comparator.comparingDouble(h -> -h.similarity()));
+		return out;
+	}
+
+	/** Liga {@code from -> to}; lista cheia fica com os {@code max} mais similares a {@code from}. */
+	private void link(int from, int to, int level, int max) {
+		int[] nb = links[from][level];
+		int n = nb[0];
+		if (n < max) {
+			nb[n + 1] = to;
+			nb[0] = n + 1;
+			return;
+		}
+		float sTo = similarity(from, to);
+		int worst = -1;
+		float worstSim = sTo;
+		for (int i = 1; i <= n; i++) {
+			float s = similarity(from, nb[i]);
+			if (s < worstSim) {
+				worstSim = s;
+				worst = i;
+			}
+		}
+		if (worst > 0)
+			nb[worst] = to;
+	}
+
+	private void grow(int needed) {
+		if (needed <= links.length)
+			return;
+		int cap = Math.max(needed, links.length * 2);
+		vectors = Arrays.copyOf(vectors, cap * dim);
+		links = Arrays.copyOf(links, cap);
+	}
+}
@@ -0,0 +1,250 @@
+package br.com.ia.services.semantic;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import br.com.ia.model.IaResponse;
+import br.com.ia.sdk.context.ShardFingerprint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache semântico de respostas: um prompt parecido o bastante (similaridade de cosseno
+ * {@code >= erp.ia.semantic-cache.threshold}) com um já respondido no mesmo escopo devolve a
+ * resposta guardada sem chamar a API.
+ * <p>
+ * O escopo é {@code moduleKey}, versões de schema e regras, o conteúdo de cada shard (hash do
+ * payload: versões de shard são contadores por chat e não distinguem chats), o formato de saída
+ * ({@code text}), as instructions, o modelo e o embedder ({@link #scopeOf}); cada escopo tem seu
+ * {@link HnswIndex}. Entradas vencem após {@code ttl-minutes}; escopo cheio ({@code max-entries})
+ * é reconstruído só com as entradas vivas mais recentes e escopos sem entrada viva são
+ * descartados pelo expurgo periódico. Desligado por padrão; o request pode recusar com
+ * {@code options.semantic_cache=false}.
+ * </p>
+ * Embeddings vêm do bean {@link Embedder}, ou do {@link HashingEmbedder} local quando não há.
+ * Métricas: {@code ia.semantic_cache} (tag {@code result=hit|miss}), timer
+ * {@code ia.semantic_cache.lookup} e gauge {@code ia.semantic_cache.entries}.
+ */
+@Slf4j
+@Component
+public class SemanticCache {
+
+	/** Resposta guardada (sem chatId/custo do request original). */
+	private record Entry(IaResponse response, long storedAt) {
+	}
+
+	/** Índice de um escopo; entradas alinhadas pelo id do nó (em ordem de gravação). */
+	private static final class Scope {
+		final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		HnswIndex index;
+		List<Entry> entries = new ArrayList<>();
+		/** Removido do mapa pelo expurgo: quem ainda o tinha em mãos pega um novo. */
+		boolean removed;
+	}
+
+	private final Embedder embedder;
+	private final MeterRegistry registry;
+	private final Map<String, Scope> scopes = new ConcurrentHashMap<>();
+	private final AtomicInteger size = new AtomicInteger();
+
+	@Value("${erp.ia.semantic-cache.enabled:false}")
+	private boolean enabled;
+
+	@Value("${erp.ia.semantic-cache.threshold:0.92}")
+	private double threshold;
+
+	@Value("${erp.ia.semantic-cache.ttl-minutes:60}")
+	private long ttlMinutes;
+
+	@Value("${erp.ia.semantic-cache.max-entries:5000}")
+	private int maxEntries;
+
+	@Value("${erp.ia.semantic-cache.hnsw.m:16}")
+	private int m;
+
+	@Value("${erp.ia.semantic-cache.hnsw.ef-construction:100}")
+	private int efConstruction;
+
+	@Value("${erp.ia.semantic-cache.hnsw.ef-search:50}")
+	private int efSearch;
+
+	private ScheduledExecutorService purger;
+
+	public SemanticCache(ObjectProvider<Embedder> embedder, ObjectProvider<MeterRegistry> registry,
+			@Value("${erp.ia.semantic-cache.dimensions:256}") int dimensions) {
+		this.embedder = embedder.getIfAvailable(() -> new HashingEmbedder(dimensions));
+		this.registry = registry.getIfAvailable(() -> Metrics.globalRegistry);
+		Gauge.builder("ia.semantic_cache.entries", size, AtomicInteger::get).register(this.registry);
+	}
+
+	@PostConstruct
+	void startPurge() {
+		if (!enabled)
+			return;
+		purger = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "ia-semantic-cache-purge");
+			t.setDaemon(true);
+			return t;
+		});
+		long every = Math.max(1, ttlMinutes / 2);
+		purger.scheduleWithFixedDelay(this::purge, every, every, TimeUnit.MINUTES);
+	}
+
+	@PreDestroy
+	void stopPurge() {
+		if (purger != null)
+			purger.shutdownNow();
+	}
+
+	/** true se o cache está ligado e o request não recusou ({@code options.semantic_cache=false}). */
+	public boolean enabledFor(Map<String, Object> opts) {
+		Object flag = opts.get("semantic_cache");
+		return enabled && (flag == null || Boolean.parseBoolean(String.valueOf(flag)));
+	}
+
+	/**
+	 * Escopo de reaproveitamento: respostas só são trocadas entre requests do mesmo módulo,
+	 * schema, regras, conteúdo de shards, formato de saída, instructions e modelo.
+	 *
+	 * @param shardFingerprints "type:hash do payload" de cada shard, em qualquer ordem
+	 * @param textFormat        {@code options.text} serializado (response_format), ou null
+	 */
+	public String scopeOf(String moduleKey, Object schemaVersion, Object rulesVersion, List<String> shardFingerprints,
+			String textFormat, String instructions, String model) {
+		List<String> sorted = new ArrayList<>(shardFingerprints);
+		sorted.sort(null);
+		String digest = ShardFingerprint.begin()
+				.field("emb", embedder.id())
+				.field("instructions", instructions)
+				.field("model", model)
+				.field("rules", rulesVersion == null ? 1 : rulesVersion)
+				.field("schema", schemaVersion == null ? 1 : schemaVersion)
+				.field("shards", String.join(",", sorted))
+				.field("text", textFormat)
+				.hex();
+		return "mod:" + moduleKey + "|" + digest;
+	}
+
+	/** Resposta de um prompt similar no escopo, já com o chatId do request atual e custo zero. */
+	public Optional<IaResponse> lookup(String scope, String prompt, String chatId) {
+		if (!enabled || prompt == null || prompt.isBlank())
+			return Optional.empty();
+		long t0 = System.nanoTime();
+		Optional<IaResponse> hit = find(scope, embedder.embed(prompt));
+		Timer.builder("ia.semantic_cache.lookup").register(registry).record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+		Counter.builder("ia.semantic_cache").tag("result", hit.isPresent() ? "hit" : "miss").register(registry).increment();
+		return hit.map(r -> copyFor(r, chatId));
+	}
+
+	/** Guarda a resposta de sucesso do prompt no escopo. */
+	public void store(String scope, String prompt, IaResponse response) {
+		if (!enabled || prompt == null || prompt.isBlank() || response == null || !response.isSuccess())
+			return;
+		float[] v = embedder.embed(prompt);
+		Scope s = scopes.computeIfAbsent(scope, k -> new Scope());
+		s.lock.writeLock().lock();
+		while (s.removed) {
+			s.lock.writeLock().unlock();
+			s = scopes.computeIfAbsent(scope, k -> new Scope());
+			s.lock.writeLock().lock();
+		}
+		try {
+			if (s.index == null)
+				s.index = new HnswIndex(embedder.dimensions(), m, efConstruction, 64);
+			if (s.index.size() >= maxEntries)
+				rebuild(s);
+			s.index.add(v);
+			s.entries.add(new Entry(copyFor(response, null), System.currentTimeMillis()));
+			size.incrementAndGet();
+		} finally {
+			s.lock.writeLock().unlock();
+		}
+	}
+
+	private Optional<IaResponse> find(String scope, float[] query) {
+		Scope s = scopes.get(scope);
+		if (s == null)
+			return Optional.empty();
+		long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(ttlMinutes);
+		s.lock.readLock().lock();
+		try {
+			if (s.index == null)
+				return Optional.empty();
+			for (HnswIndex.Hit h : s.index.search(query, 4, efSearch)) {
+				if (h.similarity() < threshold)
+					break;
+				Entry e = s.entries.get(h.node());
+				if (e.storedAt() >= cutoff)
+					return Optional.of(e.response());
+			}
+			return Optional.empty();
+		} finally {
+			s.lock.readLock().unlock();
+		}
+	}
+
+	/** Refaz o índice com as entradas vivas; se ainda cheio, mantém só a metade mais recente. */
+	private void rebuild(Scope s) {
+		long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(ttlMinutes);
+		List<Integer> live = new ArrayList<>();
+		for (int i = 0; i < s.entries.size(); i++) {
+			if (s.entries.get(i).storedAt() >= cutoff)
+				live.add(i);
+		}
+		if (live.size() >= maxEntries / 2)
+			live = live.subList(live.size() - maxEntries / 2, live.size());
+
+		HnswIndex index = new HnswIndex(embedder.dimensions(), m, efConstruction, Math.max(64, live.size() * 2));
+		List<Entry> entries = new ArrayList<>(live.size());
+		for (int i : live) {
+			index.add(s.index.vector(i));
+			entries.add(s.entries.get(i));
+		}
+		size.addAndGet(entries.size() - s.entries.size());
+		log.debug("Cache semântico: escopo reconstruído com {} de {} entradas", entries.size(), s.entries.size());
+		s.index = index;
+		s.entries = entries;
+	}
+
+	/** Descarta escopos vazios ou só com entradas vencidas. */
+	private void purge() {
+		long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(ttlMinutes);
+		for (Map.Entry<String, Scope> e : scopes.entrySet()) {
+			Scope s = e.getValue();
+			s.lock.writeLock().lock();
+			try {
+				// entradas em ordem de gravação: a última é a mais nova
+				if (s.entries.isEmpty() || s.entries.get(s.entries.size() - 1).storedAt() < cutoff) {
+					s.removed = true;
+					scopes.remove(e.getKey(), s);
+					size.addAndGet(-s.entries.size());
+				}
+			} finally {
+				s.lock.writeLock().unlock();
+			}
+		}
+	}
+
+	private static IaResponse copyFor(IaResponse r, String chatId) {
+		return IaResponse.success(chatId, r.getResposta(), BigDecimal.ZERO, r.getModelo(), 0, 0);
+	}
+}
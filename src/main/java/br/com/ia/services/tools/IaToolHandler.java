@@ -0,0 +1,38 @@
+package br.com.ia.services.tools;
+
+import java.util.Map;
+
+/**
+ * Executor de uma function tool dentro do IAServer. Implementações registradas como bean são
+ * chamadas pelo {@link ToolCallLoop} quando o modelo pede {@code function_call} com o mesmo
+ * {@link #name()}; o retorno volta ao modelo como {@code function_call_output}.
+ * <p>
+ * A definição da tool (nome, descrição, JSON Schema) continua vindo do ERP em
+ * {@code options.tools}; o handler só executa.
+ * </p>
+ */
+public interface IaToolHandler {
+
+	/** Nome da function (igual ao {@code name} em {@code options.tools}). */
+	String name();
+
+	/**
+	 * true se o resultado depende só dos argumentos: chamadas repetidas com os mesmos
+	 * argumentos no mesmo request reaproveitam o resultado.
+	 */
+	default boolean deterministic() {
+		return false;
+	}
+
+	/**
+	 * Executa a tool.
+	 *
+	 * @param call chamada (chatId, moduleKey, argumentos já convertidos)
+	 * @return saída para o modelo (texto ou JSON)
+	 */
+	String execute(ToolCall call) throws Exception; // NOSONAR
+
+	/** Dados de uma chamada. */
+	record ToolCall(String chatId, String moduleKey, String name, Map<String, Object> arguments) {
+	}
+}
@@ -0,0 +1,250 @@
+package br.com.ia.services.tools;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.ia.model.responses.ResponsesRequest;
+import br.com.ia.model.responses.ResponsesResponse;
+import br.com.ia.model.responses.Usage;
+import br.com.ia.services.cancel.CancellationRegistry;
+import br.com.ia.services.client.responses.ResponsesClient;
+import br.com.shared.exception.IAException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ciclo call → execute → continue das function tools no próprio processor.
+ * <p>
+ * Enquanto a resposta trouxer {@code function_call} com handler registrado, executa as
+ * chamadas (em paralelo quando {@code parallel_tool_calls} não for false), limitadas por
+ * {@code erp.ia.tools.timeout-ms} por rodada, e continua com {@code previous_response_id}
+ * enviando só os {@code function_call_output}. Chamadas sem handler encerram o ciclo e a
+ * resposta volta ao ERP como antes. Resultados de handlers determinísticos ficam em cache
+ * durante o request.
+ * </p>
+ * As tools rodam num pool de {@code erp.ia.tools.parallelism} threads com fila limitada a
+ * {@code erp.ia.tools.queue-capacity}: timeout interrompe a thread do handler e fila cheia vira
+ * saída de erro na hora, para um handler travado não esgotar o pool de todos os chats.
+ */
+@Slf4j
+@Component
+public class ToolCallLoop {
+
+	private static final String FUNCTION_CALL = "function_call";
+	private static final TypeReference<Map<String, Object>> ARGS = new TypeReference<>() {
+	};
+
+	/** Resposta final do ciclo e o uso somado de todas as rodadas. */
+	public record Result(ResponsesResponse response, Usage usage, int rounds) {
+	}
+
+	private final Map<String, IaToolHandler> handlers = new HashMap<>();
+	private final ResponsesClient responsesClient;
+	private final CancellationRegistry cancellations;
+	private final ObjectMapper mapper;
+	private final ExecutorService executor;
+
+	@Value("${erp.ia.tools.max-rounds:8}")
+	private int maxRounds;
+
+	@Value("${erp.ia.tools.timeout-ms:20000}")
+	private long timeoutMs;
+
+	public ToolCallLoop(ObjectProvider<IaToolHandler> handlers, ResponsesClient responsesClient,
+			CancellationRegistry cancellations, ObjectMapper mapper,
+			@Value("${erp.ia.tools.parallelism:8}") int parallelism,
+			@Value("${erp.ia.tools.queue-capacity:64}") int queueCapacity) {
+		handlers.orderedStream().forEach(h -> {
+			if (this.handlers.putIfAbsent(h.name(), h) != null)
+				throw new IllegalStateException("IaToolHandler duplicado para a tool " + h.name());
+		});
+		this.responsesClient = responsesClient;
+		this.cancellations = cancellations;
+		this.mapper = mapper;
+		AtomicInteger seq = new AtomicInteger();
+		int threads = Math.max(1, parallelism);
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+					Thread t = new Thread(r, "ia-tool-" + seq.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				});
+	}
+
+	@PreDestroy
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/** true se há algum IaToolHandler registrado. */
+	public boolean hasHandlers() {
+		return !handlers.isEmpty();
+	}
+
+	/** true se a resposta pede tools e todas têm handler no servidor. */
+	public boolean handles(ResponsesResponse res) {
+		if (handlers.isEmpty())
+			return false;
+		var calls = calls(res);
+		return !calls.isEmpty() && allHandled(calls);
+	}
+
+	/**
+	 * Roda o ciclo a partir da primeira resposta. Cancelamento do chatId (inclusive durante a
+	 * execução das tools, quando não há chamada registrada) encerra o ciclo antes da próxima
+	 * rodada.
+	 *
+	 * @param req    request original (instructions/tools/opções são reaproveitados)
+	 * @param first  resposta da primeira chamada
+	 * @param sentAt envio do request ({@code IaHeaders.SENT_AT})
+	 */
+	public Result run(String apiKey, ResponsesRequest req, ResponsesResponse first, String chatId,
+			String moduleKey, long sentAt) throws IAException {
+		Map<String, String> cache = new ConcurrentHashMap<>();
+		ResponsesResponse res = first;
+		Usage usage = first.getUsage();
+		int rounds = 0;
+
+		List<ResponsesResponse.OutputItem> calls = calls(res);
+		while (!calls.isEmpty() && allHandled(calls)) {
+			if (++rounds > maxRounds)
+				throw new IAException("Limite de rodadas de tool call excedido (" + maxRounds + ")");
+
+			List<ResponsesRequest.InputItem> outputs = execute(calls, chatId, moduleKey, cache,
+					!Boolean.FALSE.equals(req.getParallelToolCalls()));
+
+			if (cancellations.isCancelled(chatId, sentAt))
+				throw cancellations.dropQueued(chatId);
+			ResponsesRequest next = req.toBuilder().input(outputs).previousResponseId(res.getId()).build();
+			res = responsesClient.createResponse(apiKey, next, sentAt);
+			usage = usage.plus(res.getUsage());
+			calls = calls(res);
+		}
+		return new Result(res, usage, rounds);
+	}
+
+	private List<ResponsesRequest.InputItem> execute(List<ResponsesResponse.OutputItem> calls, String chatId,
+			String moduleKey, Map<String, String> cache, boolean parallel) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+		List<ResponsesRequest.InputItem> outputs = new ArrayList<>(calls.size());
+
+		if (!parallel || calls.size() == 1) {
+			for (var call : calls) {
+				var f = submit(call, chatId, moduleKey, cache);
+				outputs.add(ResponsesRequest.InputItem.functionCallOutput(call.getCallId(), await(f, call, deadline)));
+			}
+			return outputs;
+		}
+
+		List<Future<String>> futures = new ArrayList<>(calls.size());
+		for (var call : calls) {
+			futures.add(submit(call, chatId, moduleKey, cache));
+		}
+		for (int i = 0; i < calls.size(); i++) {
+			outputs.add(ResponsesRequest.InputItem.functionCallOutput(calls.get(i).getCallId(),
+					await(futures.get(i), calls.get(i), deadline)));
+		}
+		return outputs;
+	}
+
+	/**
+	 * Enfileira a tool num {@code FutureTask} ({@code cancel(true)} interrompe o handler). Pool e
+	 * fila cheios: future já concluído com a saída de erro.
+	 */
+	private Future<String> submit(ResponsesResponse.OutputItem call, String chatId, String moduleKey,
+			Map<String, String> cache) {
+		try {
+			return executor.submit(() -> invoke(call, chatId, moduleKey, cache));
+		} catch (RejectedExecutionException e) {
+			log.warn("Tool {} recusada: pool de tools cheio (chatId={})", call.getName(), chatId);
+			return CompletableFuture.completedFuture(error("pool de tools cheio; tente novamente"));
+		}
+	}
+
+	private String invoke(ResponsesResponse.OutputItem call, String chatId, String moduleKey,
+			Map<String, String> cache) {
+		IaToolHandler h = handlers.get(call.getName());
+		String raw = call.getArguments() == null ? "{}" : call.getArguments();
+		String key = h.deterministic() ? call.getName() + '\u0000' + raw : null;
+		if (key != null) {
+			String hit = cache.get(key);
+			if (hit != null)
+				return hit;
+		}
+		try {
+			Map<String, Object> args = mapper.readValue(raw, ARGS);
+			String out = h.execute(new IaToolHandler.ToolCall(chatId, moduleKey, call.getName(), args));
+			if (out == null)
+				out = "";
+			if (key != null)
+				cache.put(key, out);
+			return out;
+		} catch (Exception e) { // NOSONAR: o erro vira saída para o modelo decidir
+			log.warn("Tool {} falhou (chatId={}): {}", call.getName(), chatId, e.toString());
+			return error(e.getMessage());
+		}
+	}
+
+	private String await(Future<String> f, ResponsesResponse.OutputItem call, long deadline) {
+		try {
+			return f.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			f.cancel(true);
+			log.warn("Tool {} excedeu {} ms", call.getName(), timeoutMs);
+			return error("timeout após " + timeoutMs + " ms");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			f.cancel(true);
+			return error("interrompida");
+		} catch (ExecutionException e) {
+			return error(String.valueOf(e.getCause()));
+		}
+	}
+
+	private String error(String msg) {
+		try {
+			return mapper.writeValueAsString(Map.of("error", msg == null ? "erro" : msg));
+		} catch (Exception e) {
+			return "{\"error\":\"erro\"}";
+		}
+	}
+
+	private boolean allHandled(List<ResponsesResponse.OutputItem> calls) {
+		for (var c : calls) {
+			if (!handlers.containsKey(c.getName()))
+				return false; // tool do ERP: devolve a resposta como está
+		}
+		return true;
+	}
+
+	private static List<ResponsesResponse.OutputItem> calls(ResponsesResponse res) {
+		if (res == null || res.getOutput() == null)
+			return List.of();
+		List<ResponsesResponse.OutputItem> out = new ArrayList<>();
+		for (var item : res.getOutput()) {
+			if (FUNCTION_CALL.equals(item.getType()))
+				out.add(item);
+		}
+		return out;
+	}
+}
@@ -3,6 +3,7 @@ package br.com.ia.utils;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 
+import br.com.ia.model.responses.Usage;
 import lombok.experimental.UtilityClass;
 
 @UtilityClass
@@ -23,4 +24,24 @@ public class OpenAICustoUtil {
 	public static BigDecimal calcularCustoPorUsage(String model, int inputTokens, int outputTokens) {
 		return calcularCusto(model, inputTokens, outputTokens);
 	}
+
+	/**
+	 * Custo com desconto de prompt cache: tokens em cache pelo preço de cache, o restante da
+	 * entrada pelo preço cheio. Tokens de raciocínio já estão em {@code outputTokens}.
+	 */
+	public static BigDecimal calcularCustoPorUsage(String model, Usage usage) {
+		BigDecimal cachedPrice = ModelPricing.cachedPromptPricePer1k(model);
+		if (cachedPrice.signum() == 0)
+			cachedPrice = ModelPricing.promptPricePer1k(model); // modelo sem preço de cache: cobra cheio
+
+		BigDecimal custoPrompt = porMil(usage.uncachedInputTokens()).multiply(ModelPricing.promptPricePer1k(model));
+		BigDecimal custoCache = porMil(usage.cachedTokens()).multiply(cachedPrice);
+		BigDecimal custoResposta = porMil(usage.outputTokens()).multiply(ModelPricing.outputPricePer1k(model));
+
+		return custoPrompt.add(custoCache).add(custoResposta).setScale(5, RoundingMode.HALF_UP);
+	}
+
+	private static BigDecimal porMil(int tokens) {
+		return BigDecimal.valueOf(tokens).divide(BigDecimal.valueOf(1000), 6, RoundingMode.HALF_UP);
+	}
 }
@@ -0,0 +1,24 @@
+package br.com.ia.loadtest;
+
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+
+import br.com.ia.loadtest.StageRecorder.Stage;
+
+/**
+ * Contexto Spring do teste de carga: SDK ({@code PromptExecutorImpl}) e processador
+ * ({@code IaProcessor}) no mesmo processo, como em produção no IAServer.
+ */
+@SpringBootApplication(scanBasePackages = "br.com.ia")
+class LoadTestApplication {
+
+	/** Cronometra a chamada HTTP feita pelo ResponsesClient (até a chegada dos headers). */
+	@Bean
+	WebClientCustomizer upstreamTiming(StageRecorder stages) {
+		return builder -> builder.filter((request, next) -> {
+			long t0 = System.nanoTime();
+			return next.exchange(request).doOnTerminate(() -> stages.record(Stage.UPSTREAM, System.nanoTime() - t0));
+		});
+	}
+}
@@ -0,0 +1,99 @@
+package br.com.ia.loadtest;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import br.com.ia.sdk.PromptExecutor;
+
+/**
+ * Teste de carga ponta a ponta: broker Kafka embutido (KRaft), stand-in local da
+ * Responses API e o IAServer completo (SDK + processador) no mesmo processo.
+ * <p>
+ * Executa um warm-up, descarta as medições, roda a janela medida na taxa alvo e imprime
+ * vazão e percentis por etapa. Aumente {@code -Dia.load.rate} até a vazão parar de
+ * acompanhar a taxa alvo ou {@code driver.lag}/{@code sdk->upstream} dispararem: esse é o
+ * ponto de saturação.
+ * </p>
+ *
+ * <pre>
+ * mvn -Pload-test verify -Dia.load.rate=50 -Dia.load.duration-s=120
+ * </pre>
+ *
+ * Parâmetros: ver {@link LoadTestOptions}.
+ */
+public final class LoadTestHarness {
+
+	private static final String REQUESTS_TOPIC = "ia.requests";
+	private static final String RESPONSES_TOPIC = "ia.responses";
+
+	private LoadTestHarness() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		LoadTestOptions opts = LoadTestOptions.fromSystemProperties();
+		PrintStream out = System.out;
+
+		EmbeddedKafkaBroker broker = new EmbeddedKafkaKraftBroker(1, Math.max(3, opts.consumers()), REQUESTS_TOPIC,
+				RESPONSES_TOPIC);
+		broker.afterPropertiesSet();
+
+		StageRecorder stages = new StageRecorder();
+		try (ResponsesApiStub stub = ResponsesApiStub.start(opts);
+				ConfigurableApplicationContext ctx = new SpringApplicationBuilder(LoadTestApplication.class)
+						.properties(properties(opts, broker.getBrokersAsString(), stub.baseUrl()))
+						.initializers(c -> c.getBeanFactory().registerSingleton("stageRecorder", stages))
+						.run(args)) {
+
+			PromptLoadDriver driver = new PromptLoadDriver(ctx.getBean(PromptExecutor.class), stub, stages, opts);
+
+			if (opts.warmupSeconds() > 0) {
+				out.printf("warm-up: %ds @ %.1f req/s%n", opts.warmupSeconds(), opts.rate());
+				driver.run(opts.warmupSeconds());
+				stages.reset();
+			}
+
+			out.printf("medição: %ds @ %.1f req/s (max in-flight %d, consumers %d)%n", opts.durationSeconds(),
+					opts.rate(), opts.maxInFlight(), opts.consumers());
+			PromptLoadDriver.Result r = driver.run(opts.durationSeconds());
+
+			out.println();
+			out.printf("planejadas=%d concluídas=%d falhas=%d timeouts=%d rejeitadas=%d%n", r.planned(),
+					r.completed(), r.failed(), r.timedOut(), r.rejected());
+			out.printf("vazão=%.2f req/s (alvo %.2f) em %.1fs%n", r.throughput(), opts.rate(), r.seconds());
+			out.println(stub.summary());
+			out.println();
+			StageRecorder.print(stages.snapshot(), out);
+		} finally {
+			broker.destroy();
+		}
+	}
+
+	private static Map<String, Object> properties(LoadTestOptions opts, String brokers, String stubUrl) {
+		Map<String, Object> p = new LinkedHashMap<>();
+		p.put("spring.main.web-application-type", "none");
+		p.put("spring.cloud.stream.kafka.binder.brokers", brokers);
+		p.put("erp.ia.responses.base-url", stubUrl);
+		p.put("erp.ia.reply-timeout-ms", opts.replyTimeoutMs());
+		// o SDK publica direto no tópico de entrada do processador
+		p.put("ia.responses.topic", REQUESTS_TOPIC);
+		p.put("spring.cloud.stream.bindings.processIa-in-0.consumer.concurrency", opts.consumers());
+		// o binder converte o payload para byte[] (content-type); o serializer só repassa
+		p.put("spring.cloud.stream.kafka.binder.configuration.value.serializer",
+				"org.apache.kafka.common.serialization.ByteArraySerializer");
+		p.put("spring.cloud.stream.kafka.binder.configuration.value.deserializer",
+				"org.apache.kafka.common.serialization.ByteArrayDeserializer");
+		p.put("spring.datasource.url", "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+		p.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+		p.put("logging.level.org.springframework.cloud.stream", "WARN");
+		p.put("logging.level.org.springframework.kafka", "WARN");
+		p.put("logging.level.org.apache.kafka", "WARN");
+		p.put("logging.level.kafka", "WARN");
+		return p;
+	}
+}
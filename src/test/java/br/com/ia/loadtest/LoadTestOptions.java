@@ -0,0 +1,66 @@
+package br.com.ia.loadtest;
+
+/**
+ * Parâmetros do teste de carga, lidos de system properties ({@code -Dia.load.*}).
+ *
+ * <pre>
+ * mvn -Pload-test verify -Dia.load.rate=50 -Dia.load.duration-s=120 -Dia.load.stub.rate-429=0.02
+ * </pre>
+ */
+record LoadTestOptions(
+		double rate,
+		int durationSeconds,
+		int warmupSeconds,
+		int maxInFlight,
+		int consumers,
+		long replyTimeoutMs,
+		String model,
+		int promptBytes,
+		int shards,
+		int shardBytes,
+		long stubMedianMs,
+		long stubP99Ms,
+		double stubRate429,
+		double stubRate5xx,
+		int stubRetryAfterSeconds,
+		boolean stubReasoningItem,
+		int stubOutputBytes,
+		long stubStreamChunkIntervalMs) {
+
+	static LoadTestOptions fromSystemProperties() {
+		return new LoadTestOptions(
+				dbl("ia.load.rate", 20.0),
+				integer("ia.load.duration-s", 60),
+				integer("ia.load.warmup-s", 10),
+				integer("ia.load.max-in-flight", 256),
+				integer("ia.load.consumers", 3),
+				lng("ia.load.reply-timeout-ms", 30_000L),
+				System.getProperty("ia.load.model", "gpt-5"),
+				integer("ia.load.prompt-bytes", 2_000),
+				integer("ia.load.shards", 4),
+				integer("ia.load.shard-bytes", 1_500),
+				lng("ia.load.stub.median-ms", 800L),
+				lng("ia.load.stub.p99-ms", 4_000L),
+				dbl("ia.load.stub.rate-429", 0.0),
+				dbl("ia.load.stub.rate-5xx", 0.0),
+				integer("ia.load.stub.retry-after-s", 1),
+				Boolean.parseBoolean(System.getProperty("ia.load.stub.reasoning-item", "true")),
+				integer("ia.load.stub.output-bytes", 600),
+				lng("ia.load.stub.stream-chunk-interval-ms", 20L));
+	}
+
+	private static double dbl(String key, double def) {
+		String v = System.getProperty(key);
+		return v == null || v.isBlank() ? def : Double.parseDouble(v.trim());
+	}
+
+	private static int integer(String key, int def) {
+		String v = System.getProperty(key);
+		return v == null || v.isBlank() ? def : Integer.parseInt(v.trim());
+	}
+
+	private static long lng(String key, long def) {
+		String v = System.getProperty(key);
+		return v == null || v.isBlank() ? def : Long.parseLong(v.trim());
+	}
+}
@@ -0,0 +1,149 @@
+package br.com.ia.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import br.com.ia.loadtest.StageRecorder.Stage;
+import br.com.ia.model.IaResponse;
+import br.com.ia.sdk.PromptExecutor;
+import br.com.ia.sdk.PromptRequest;
+import br.com.ia.sdk.context.ContextShard;
+import br.com.ia.sdk.context.ContextShards;
+import br.com.shared.exception.IAException;
+
+/**
+ * Driver de carga em malha aberta: dispara {@link PromptExecutor#executaPrompt} na taxa
+ * alvo, independentemente de quanto as chamadas anteriores demoram. Quando todas as
+ * {@code maxInFlight} threads estão ocupadas a chamada é contada como rejeitada (sinal
+ * direto de saturação) em vez de atrasar o relógio do driver.
+ */
+final class PromptLoadDriver {
+
+	record Result(long planned, long completed, long failed, long timedOut, long rejected, double seconds) {
+
+		double throughput() {
+			return seconds <= 0 ? 0 : completed / seconds;
+		}
+	}
+
+	private final PromptExecutor executor;
+	private final ResponsesApiStub stub;
+	private final StageRecorder stages;
+	private final LoadTestOptions opts;
+	private final String prompt;
+	private final List<ContextShard> shards;
+	private final AtomicLong seq = new AtomicLong();
+
+	PromptLoadDriver(PromptExecutor executor, ResponsesApiStub stub, StageRecorder stages, LoadTestOptions opts) {
+		this.executor = executor;
+		this.stub = stub;
+		this.stages = stages;
+		this.opts = opts;
+		this.prompt = "Classifique o texto a seguir. " + "lorem ipsum ".repeat(Math.max(1, opts.promptBytes() / 12));
+		this.shards = buildShards(opts);
+	}
+
+	Result run(int seconds) throws InterruptedException {
+		AtomicLong completed = new AtomicLong();
+		AtomicLong failed = new AtomicLong();
+		AtomicLong timedOut = new AtomicLong();
+		AtomicLong rejected = new AtomicLong();
+		AtomicLong planned = new AtomicLong();
+
+		ThreadPoolExecutor workers = new ThreadPoolExecutor(opts.maxInFlight(), opts.maxInFlight(), 30,
+				TimeUnit.SECONDS, new SynchronousQueue<>());
+		ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+
+		long intervalNanos = Math.max(1L, (long) (1_000_000_000L / opts.rate()));
+		long start = System.nanoTime();
+		long end = start + TimeUnit.SECONDS.toNanos(seconds);
+
+		ticker.scheduleAtFixedRate(() -> {
+			long now = System.nanoTime();
+			if (now >= end)
+				return;
+			// instante planejado desta chamada (não o instante em que o tick rodou)
+			long n = planned.getAndIncrement();
+			long intended = start + n * intervalNanos;
+			try {
+				workers.execute(() -> call(intended, completed, failed, timedOut));
+			} catch (RejectedExecutionException e) {
+				rejected.incrementAndGet();
+			}
+		}, 0, intervalNanos, TimeUnit.NANOSECONDS);
+
+		long waitMs = TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime());
+		if (waitMs > 0)
+			Thread.sleep(waitMs);
+		ticker.shutdownNow();
+
+		workers.shutdown();
+		workers.awaitTermination(opts.replyTimeoutMs() + 5_000, TimeUnit.MILLISECONDS);
+		double elapsed = (System.nanoTime() - start) / 1e9;
+
+		return new Result(planned.get(), completed.get(), failed.get(), timedOut.get(), rejected.get(), elapsed);
+	}
+
+	private void call(long intended, AtomicLong completed, AtomicLong failed, AtomicLong timedOut) {
+		String chatId = "load-" + seq.incrementAndGet();
+		long begin = System.nanoTime();
+		stages.record(Stage.DRIVER_LAG, begin - intended);
+
+		try {
+			IaResponse resp = executor.executaPrompt(request(chatId));
+			if (resp != null && resp.isSuccess()) {
+				completed.incrementAndGet();
+			} else {
+				failed.incrementAndGet();
+			}
+		} catch (IAException e) {
+			if (e.getMessage() != null && e.getMessage().startsWith("Timeout")) {
+				timedOut.incrementAndGet();
+			} else {
+				failed.incrementAndGet();
+			}
+		} catch (RuntimeException e) {
+			failed.incrementAndGet();
+		}
+
+		long done = System.nanoTime();
+		stages.record(Stage.END_TO_END, done - intended);
+
+		long[] t = stub.takeTimings(chatId);
+		if (t != null) {
+			stages.record(Stage.SDK_TO_UPSTREAM, t[0] - begin);
+			stages.record(Stage.UPSTREAM_TO_SDK, done - t[1]);
+		}
+	}
+
+	private PromptRequest request(String chatId) {
+		return PromptRequest.builder()
+				.chatId(chatId)
+				.moduleKey("loadtest")
+				.prompt(prompt)
+				.apiKey("sk-loadtest")
+				.model(opts.model())
+				.maxOutputTokens(256)
+				.temperaturePercent(15.0)
+				.contextShards(shards)
+				.build();
+	}
+
+	private static List<ContextShard> buildShards(LoadTestOptions opts) {
+		List<ContextShard> out = new ArrayList<>(opts.shards());
+		String filler = "contexto ".repeat(Math.max(1, opts.shardBytes() / 9));
+		for (int i = 0; i < opts.shards(); i++) {
+			boolean stable = i % 2 == 0;
+			out.add(ContextShards.of("loadtest.shard" + i, 1, stable,
+					ContextShards.mapOf("id", i, ContextShards.TITULO, "Shard " + i, ContextShards.TEXTO, filler)));
+		}
+		return out;
+	}
+}
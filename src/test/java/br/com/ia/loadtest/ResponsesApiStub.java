@@ -0,0 +1,214 @@
+package br.com.ia.loadtest;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Stand-in local de {@code POST /v1/responses} sobre {@link MockWebServer}.
+ * <ul>
+ * <li>latência log-normal parametrizada por mediana e p99;</li>
+ * <li>injeção de 429 (com {@code Retry-After}) e 503 por probabilidade;</li>
+ * <li>SSE ({@code "stream": true}) com eventos {@code response.output_text.delta} em chunks
+ * espaçados;</li>
+ * <li>corpo no formato real da API, opcionalmente com um item {@code reasoning} antes da
+ * mensagem.</li>
+ * </ul>
+ * Registra o instante de chegada e de resposta por chatId ({@code safety_identifier}) para
+ * que o driver decomponha a latência por etapa.
+ */
+final class ResponsesApiStub implements AutoCloseable {
+
+	private static final String PATH = "/v1/responses";
+	private static final double Z_99 = 2.326;
+
+	private final MockWebServer server = new MockWebServer();
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final LoadTestOptions opts;
+	private final double sigma;
+	private final String outputText;
+
+	private final Map<String, long[]> timings = new ConcurrentHashMap<>();
+	private final AtomicLong served = new AtomicLong();
+	private final AtomicLong injected429 = new AtomicLong();
+	private final AtomicLong injected5xx = new AtomicLong();
+	private final AtomicLong streamed = new AtomicLong();
+
+	private ResponsesApiStub(LoadTestOptions opts) {
+		this.opts = opts;
+		double ratio = Math.max(1.0, (double) opts.stubP99Ms() / Math.max(1, opts.stubMedianMs()));
+		this.sigma = Math.log(ratio) / Z_99;
+		this.outputText = "{\"ok\":true,\"texto\":\"" + "x".repeat(Math.max(0, opts.stubOutputBytes())) + "\"}";
+	}
+
+	static ResponsesApiStub start(LoadTestOptions opts) throws IOException {
+		ResponsesApiStub stub = new ResponsesApiStub(opts);
+		stub.server.setDispatcher(stub.new StubDispatcher());
+		stub.server.start();
+		return stub;
+	}
+
+	/** Base equivalente a {@code https://api.openai.com/v1}. */
+	String baseUrl() {
+		String url = server.url("/v1").toString();
+		return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+	}
+
+	/**
+	 * Remove e devolve {chegada, resposta} (System.nanoTime) da última chamada daquele chat.
+	 */
+	long[] takeTimings(String chatId) {
+		return timings.remove(chatId);
+	}
+
+	String summary() {
+		return "stub: atendidas=%d, 429=%d, 5xx=%d, sse=%d".formatted(served.get(), injected429.get(),
+				injected5xx.get(), streamed.get());
+	}
+
+	@Override
+	public void close() throws IOException {
+		server.shutdown();
+	}
+
+	private long sampleLatencyMs() {
+		double gaussian = ThreadLocalRandom.current().nextGaussian();
+		return Math.max(0L, Math.round(opts.stubMedianMs() * Math.exp(sigma * gaussian)));
+	}
+
+	private final class StubDispatcher extends Dispatcher {
+
+		@Override
+		public MockResponse dispatch(RecordedRequest request) {
+			long arrival = System.nanoTime();
+			if (!"POST".equals(request.getMethod()) || request.getPath() == null
+					|| !request.getPath().startsWith(PATH)) {
+				return new MockResponse().setResponseCode(404);
+			}
+
+			JsonNode body;
+			try {
+				body = mapper.readTree(request.getBody().readUtf8());
+			} catch (IOException e) {
+				return error(400, "invalid_request_error", "corpo inválido: " + e.getMessage());
+			}
+
+			String chatId = body.path("safety_identifier").asText(null);
+			long latencyMs = sampleLatencyMs();
+			if (chatId != null) {
+				timings.put(chatId, new long[] { arrival, arrival + TimeUnit.MILLISECONDS.toNanos(latencyMs) });
+			}
+
+			ThreadLocalRandom rnd = ThreadLocalRandom.current();
+			if (rnd.nextDouble() < opts.stubRate429()) {
+				injected429.incrementAndGet();
+				return error(429, "rate_limit_exceeded", "Rate limit reached (stub)")
+						.setHeader("Retry-After", String.valueOf(opts.stubRetryAfterSeconds()));
+			}
+			if (rnd.nextDouble() < opts.stubRate5xx()) {
+				injected5xx.incrementAndGet();
+				return error(503, "server_error", "The server is overloaded (stub)")
+						.setHeadersDelay(latencyMs / 4, TimeUnit.MILLISECONDS);
+			}
+
+			served.incrementAndGet();
+			String model = body.path("model").asText("gpt-5");
+			int inputTokens = Math.max(1, (int) (request.getBodySize() / 4));
+			if (body.path("stream").asBoolean(false)) {
+				streamed.incrementAndGet();
+				return sse(model, inputTokens, latencyMs);
+			}
+			return new MockResponse().setResponseCode(200)
+					.setHeader("Content-Type", "application/json")
+					.setBody(responseJson(model, inputTokens).toString())
+					.setHeadersDelay(latencyMs, TimeUnit.MILLISECONDS);
+		}
+
+		private MockResponse sse(String model, int inputTokens, long latencyMs) {
+			StringBuilder events = new StringBuilder();
+			event(events, "response.created", "{\"type\":\"response.created\"}");
+			String text = outputText;
+			int step = 64;
+			for (int i = 0; i < text.length(); i += step) {
+				ObjectNode delta = mapper.createObjectNode();
+				delta.put("type", "response.output_text.delta");
+				delta.put("delta", text.substring(i, Math.min(text.length(), i + step)));
+				event(events, "response.output_text.delta", delta.toString());
+			}
+			ObjectNode completed = mapper.createObjectNode();
+			completed.put("type", "response.completed");
+			completed.set("response", responseJson(model, inputTokens));
+			event(events, "response.completed", completed.toString());
+
+			// TTFT ~30% da latência sorteada; o restante sai em chunks espaçados
+			return new MockResponse().setResponseCode(200)
+					.setHeader("Content-Type", "text/event-stream")
+					.setChunkedBody(events.toString(), 256)
+					.setHeadersDelay(latencyMs * 3 / 10, TimeUnit.MILLISECONDS)
+					.throttleBody(256, opts.stubStreamChunkIntervalMs(), TimeUnit.MILLISECONDS);
+		}
+
+		private void event(StringBuilder sb, String name, String data) {
+			sb.append("event: ").append(name).append('\n').append("data: ").append(data).append("\n\n");
+		}
+
+		private ObjectNode responseJson(String model, int inputTokens) {
+			ObjectNode root = mapper.createObjectNode();
+			root.put("id", "resp_" + Long.toHexString(ThreadLocalRandom.current().nextLong()));
+			root.put("object", "response");
+			root.put("status", "completed");
+			root.put("model", model);
+
+			ArrayNode output = root.putArray("output");
+			if (opts.stubReasoningItem()) {
+				ObjectNode reasoning = output.addObject();
+				reasoning.put("type", "reasoning");
+				reasoning.put("id", "rs_stub");
+				reasoning.putArray("summary");
+			}
+			ObjectNode message = output.addObject();
+			message.put("type", "message");
+			message.put("id", "msg_stub");
+			message.put("role", "assistant");
+			message.put("status", "completed");
+			ObjectNode content = message.putArray("content").addObject();
+			content.put("type", "output_text");
+			content.put("text", outputText);
+			content.putArray("annotations");
+
+			int outputTokens = Math.max(1, outputText.length() / 4);
+			int reasoningTokens = opts.stubReasoningItem() ? outputTokens : 0;
+			ObjectNode usage = root.putObject("usage");
+			usage.put("input_tokens", inputTokens);
+			usage.putObject("input_tokens_details").put("cached_tokens", inputTokens / 2);
+			usage.put("output_tokens", outputTokens + reasoningTokens);
+			usage.putObject("output_tokens_details").put("reasoning_tokens", reasoningTokens);
+			usage.put("total_tokens", inputTokens + outputTokens + reasoningTokens);
+			return root;
+		}
+
+		private MockResponse error(int status, String code, String message) {
+			ObjectNode root = mapper.createObjectNode();
+			ObjectNode err = root.putObject("error");
+			err.put("message", message);
+			err.put("type", code);
+			err.put("code", code);
+			return new MockResponse().setResponseCode(status)
+					.setHeader("Content-Type", "application/json")
+					.setBody(root.toString());
+		}
+	}
+}
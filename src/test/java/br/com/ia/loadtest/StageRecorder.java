@@ -0,0 +1,78 @@
+package br.com.ia.loadtest;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Histogramas HdrHistogram (em microssegundos) por etapa do pipeline. Thread-safe:
+ * cada {@link Recorder} aceita gravações concorrentes sem lock.
+ */
+final class StageRecorder {
+
+	enum Stage {
+		/** Atraso entre o instante planejado e o início real da chamada (saturação do driver). */
+		DRIVER_LAG("driver.lag"),
+		/** SDK → Kafka (ia.requests) → IaProcessor → chegada no stub. */
+		SDK_TO_UPSTREAM("sdk->upstream"),
+		/** Chamada HTTP à Responses API, vista pelo WebClient (até os headers). */
+		UPSTREAM("upstream"),
+		/** Resposta do stub → Kafka (ia.responses) → future resolvido no SDK. */
+		UPSTREAM_TO_SDK("upstream->sdk"),
+		/** Ponta a ponta, medido a partir do instante planejado (corrige coordinated omission). */
+		END_TO_END("end-to-end");
+
+		private final String label;
+
+		Stage(String label) {
+			this.label = label;
+		}
+	}
+
+	private static final long MAX_TRACKABLE_US = TimeUnit.MINUTES.toMicros(10);
+
+	private final Map<Stage, Recorder> recorders = new EnumMap<>(Stage.class);
+
+	StageRecorder() {
+		for (Stage s : Stage.values()) {
+			recorders.put(s, new Recorder(MAX_TRACKABLE_US, 3));
+		}
+	}
+
+	void record(Stage stage, long nanos) {
+		if (nanos < 0)
+			return;
+		long us = Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_TRACKABLE_US);
+		recorders.get(stage).recordValue(us);
+	}
+
+	/** Descarta tudo que foi gravado até agora (fim do warm-up). */
+	void reset() {
+		recorders.values().forEach(Recorder::reset);
+	}
+
+	Map<Stage, Histogram> snapshot() {
+		Map<Stage, Histogram> out = new EnumMap<>(Stage.class);
+		recorders.forEach((stage, rec) -> out.put(stage, rec.getIntervalHistogram()));
+		return out;
+	}
+
+	static void print(Map<Stage, Histogram> snapshot, PrintStream out) {
+		out.printf("%-16s %9s %9s %9s %9s %9s %9s %9s%n", "etapa", "n", "mean", "p50", "p90", "p99", "p99.9",
+				"max");
+		for (var e : snapshot.entrySet()) {
+			Histogram h = e.getValue();
+			out.printf("%-16s %9d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", e.getKey().label, h.getTotalCount(),
+					h.getMean() / 1000.0, ms(h, 50), ms(h, 90), ms(h, 99), ms(h, 99.9), h.getMaxValue() / 1000.0);
+		}
+		out.println("(latências em ms)");
+	}
+
+	private static double ms(Histogram h, double percentile) {
+		return h.getValueAtPercentile(percentile) / 1000.0;
+	}
+}